@@ -0,0 +1,121 @@
+package assembler;
+
+/**
+ * A source line and its object code, as kept between reassemblies
+ *
+ * Besides the code it remembers what the code was worked out from (the
+ * line's address, its operand's address and the BASE value), so the next
+ * reassembly can tell whether the line needs encoding again.
+ * @author Michael Frederick (n00725913)
+ */
+public class AssembledLine {
+    private String sourceLine;
+    private DataItem item;
+    private int format;
+    private boolean encoded;
+    private int code;
+    private int digits;
+    private String messages;
+    private Exception failure;
+    private int address;
+    private DataItem target;
+    private int targetAddress;
+    private int baseAddress;
+
+    /**
+     * @param sourceLine
+     * @param item null for a comment line
+     * @param format the instruction format, 0 if it isn't an instruction
+     */
+    public AssembledLine(String sourceLine, DataItem item, int format) {
+        this.sourceLine = sourceLine;
+        this.item = item;
+        this.format = format;
+    }
+
+    public String getSourceLine() {
+        return sourceLine;
+    }
+
+    public DataItem getItem() {
+        return item;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the value of encoded
+     * @return false until setEncoding() has been called
+     */
+    public boolean isEncoded() {
+        return encoded;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    public String getMessages() {
+        return messages;
+    }
+
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * Get the value of address
+     * @return the line's address when it was encoded
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Get the value of target
+     * @return the operand's symbol when the line was encoded, or null
+     */
+    public DataItem getTarget() {
+        return target;
+    }
+
+    /**
+     * Get the value of targetAddress
+     * @return the operand's address when the line was encoded
+     */
+    public int getTargetAddress() {
+        return targetAddress;
+    }
+
+    /**
+     * Get the value of baseAddress
+     * @return the BASE value in effect when the line was encoded
+     */
+    public int getBaseAddress() {
+        return baseAddress;
+    }
+
+    /**
+     * Keeps the result of encoding the line
+     * @param chunk holds the code, messages and failure in slot 0
+     * @param target the operand's symbol, or null
+     * @param baseAddress the BASE value in effect
+     */
+    public void setEncoding(EncodedChunk chunk, DataItem target, int baseAddress) {
+        this.encoded = true;
+        this.code = chunk.getCode(0);
+        this.digits = chunk.getDigits(0);
+        this.messages = chunk.getMessages(0);
+        this.failure = chunk.getFailure(0);
+        this.address = this.item.getAddress();
+        this.target = target;
+        this.targetAddress = (target != null) ? target.getAddress() : 0;
+        this.baseAddress = baseAddress;
+    }
+}// end Class AssembledLine
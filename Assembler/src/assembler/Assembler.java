@@ -1,18 +1,70 @@
 package assembler;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 /**
  *
  * @author Michael Frederick (n00725913)
  */
 public class Assembler {
-    
+
     private static final String OUTPUTFILE = "output.txt";
-    
+
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        SicAssembler passOne = new SicAssembler(args);
+        AssemblerOptions options = AssemblerOptions.parse(args);
+        List<File> files;
+        OPTable opcodes;
+
+        if (options.isServe()) {
+            try {
+                new AssemblerServer(SicAssembler.loadOPTable(options), options).serve();
+            }
+            catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+        if (options.getSourceFiles().size() == 1 && "-".equals(options.getSourceFile())) {
+            // Source on standard input, the object program to standard output
+            try {
+                opcodes = SicAssembler.loadOPTable(options);
+            }
+            catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+            System.exit(new SicAssembler(System.in, System.out, opcodes, options).assemble() ? 0 : 1);
+        }
+        if (options.getSourceFiles().isEmpty()) {
+            System.out.println("No file to Assemble");
+            System.exit(1);
+        }
+        try {
+            files = BatchAssembler.expandSources(options.getSourceFiles(), options.getInclude());
+            opcodes = SicAssembler.loadOPTable(options);
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (files.isEmpty()) {
+            System.out.println("No file to Assemble");
+            System.exit(1);
+        }
+        if (options.isWatch()) {
+            new BatchAssembler(opcodes, options).watch(files);
+            System.exit(1);
+        }
+        int failures = new BatchAssembler(opcodes, options).run(files);
+        System.exit(failures == 0 ? 0 : 1);
     }
-    
+
 }
@@ -0,0 +1,260 @@
+package assembler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small launcher that has a running AssemblerServer do the assembling
+ *
+ *     AssemblerClient [--port=N] [assembler options] FILE...
+ *     AssemblerClient [--port=N] --stop
+ *
+ * Takes the same files and options as the assembler and leaves the same
+ * .lst, .obj (and .imd) files in the working directory, but each source
+ * is sent to the server and the output comes back, so no opcode table is
+ * built and the JVM that does the work is already warm. The opcode table
+ * is the one the server was started with. When no server is listening
+ * the files are assembled here instead, the same as the assembler would.
+ * --stop asks the server to exit.
+ *
+ * The server only has the source text, so with --no-listing the client
+ * asks for the listing and makes the .lsx table from it here. Options
+ * only a local run can honour, like --cache or --opcodes=, are not sent
+ * and a warning says so. Outputs the server didn't send back are removed,
+ * the same as a local run does, so none are left from an earlier run.
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblerClient {
+
+    // How long to wait for the server to accept, in milliseconds
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final String[] EXTENSIONS = {".obj", ".lst", ".imd"};
+    // Options the server can't honour, by prefix
+    private static final String[] LOCAL_OPTIONS = {"--cache", "--watch", "--async-write", "--mmap", "--listing=", "--opcodes="};
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        List<String> assemblerArgs = new ArrayList<String>();
+        List<String> localOptions = new ArrayList<String>();
+        StringBuilder optionLines = new StringBuilder();
+        boolean stop = false;
+        AssemblerOptions options;
+        List<File> files;
+        Socket socket = new Socket();
+
+        for (String arg : args) {
+            if ("--stop".equals(arg)) {
+                stop = true;
+            }
+            else {
+                assemblerArgs.add(arg);
+                if ("--no-listing".equals(arg)) {
+                    // The table is made here, from the listing
+                }
+                else if (isLocalOption(arg)) {
+                    localOptions.add(arg);
+                }
+                else if (arg.startsWith("--")) {
+                    optionLines.append(arg).append('\n');
+                }
+            }
+        }
+        options = AssemblerOptions.parse(assemblerArgs.toArray(new String[assemblerArgs.size()]));
+        try {
+            files = stop ? new ArrayList<File>() : BatchAssembler.expandSources(options.getSourceFiles(), options.getInclude());
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (!stop && files.isEmpty()) {
+            System.out.println("No file to Assemble");
+            System.exit(1);
+        }
+
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getPort()), CONNECT_TIMEOUT);
+        }
+        catch (IOException e) {
+            if (stop) {
+                System.out.println("No server on port " + options.getPort());
+                System.exit(1);
+            }
+            System.exit(assembleHere(files, options) == 0 ? 0 : 1);
+        }
+
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (stop) {
+                call(in, out, "stop");
+                System.exit(0);
+            }
+            for (String option : localOptions) {
+                System.out.println("Warning: the server doesn't use " + option + ", ignoring it");
+            }
+            int failures = 0;
+            for (File file : files) {
+                failures += assemble(file, options, optionLines.toString(), in, out);
+            }
+            if (files.size() > 1) {
+                System.out.printf("Assembled %d of %d files%n", files.size() - failures, files.size());
+            }
+            System.exit(failures == 0 ? 0 : 1);
+        }
+        catch (IOException e) {
+            System.out.println("Lost the server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Has the server assemble one file and writes out what comes back
+     * @param file
+     * @param options
+     * @param optionLines the options for the server, one per line
+     * @param in
+     * @param out
+     * @return 1 if it failed, else 0
+     * @throws IOException if the connection fails
+     */
+    private static int assemble(File file, AssemblerOptions options, String optionLines, DataInputStream in, DataOutputStream out) throws IOException {
+        String baseName = SicAssembler.getBaseName(file);
+        String source;
+        String[] reply;
+        File output;
+
+        try {
+            source = new String(Files.readAllBytes(file.toPath()));
+        }
+        catch (IOException e) {
+            System.out.println("Invalid Filename");
+            System.out.printf("%s: FAILED%n", file);
+            return 1;
+        }
+        reply = call(in, out, "assemble", file.getPath(), optionLines, source);
+        if ("error".equals(reply[0])) {
+            System.out.printf("%s: %s%n", file, reply[1]);
+            System.out.printf("%s: FAILED%n", file);
+            return 1;
+        }
+        // ok|failed ERROR OBJECT LISTING IMD STATS DIAGNOSTICS
+        try {
+            for (int i = 0; i < EXTENSIONS.length; i++) {
+                output = new File(baseName + EXTENSIONS[i]);
+                if (reply[2 + i] == null || (".lst".equals(EXTENSIONS[i]) && options.isNoListing())) {
+                    Files.deleteIfExists(output.toPath());
+                }
+                else {
+                    Files.write(output.toPath(), reply[2 + i].getBytes());
+                }
+            }
+            output = new File(baseName + ListingTable.EXTENSION);
+            if (options.isListingTable() && reply[3] != null) {
+                writeListingTable(file, output, reply[3]);
+            }
+            else {
+                Files.deleteIfExists(output.toPath());
+            }
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.printf("%s: FAILED%n", file);
+            return 1;
+        }
+        if (reply[5] != null) {
+            System.out.print(reply[5]);
+        }
+        if (!"ok".equals(reply[0])) {
+            if (reply[1] != null) {
+                System.out.println(reply[1]);
+            }
+            System.out.printf("%s: FAILED%n", file);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Makes the --no-listing table from the listing the server sent back
+     * @param source
+     * @param table
+     * @param listing
+     * @throws IOException
+     */
+    private static void writeListingTable(File source, File table, String listing) throws IOException {
+        ListingTable out = new ListingTable(table.getPath(), new BufferedWriter(new FileWriter(table), OutputChannel.DEFAULT_BUFFER_SIZE),
+                source, LineReader.DEFAULT_BUFFER_SIZE);
+        try {
+            for (String line : listing.split(System.lineSeparator())) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Whether an option is one only a local run can honour
+     * @param arg
+     * @return boolean
+     */
+    private static boolean isLocalOption(String arg) {
+        for (String option : LOCAL_OPTIONS) {
+            if (arg.startsWith(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends a request and waits for its reply
+     * @return the reply
+     * @throws IOException if the connection fails or the reply is cut short
+     */
+    private static String[] call(DataInputStream in, DataOutputStream out, String... request) throws IOException {
+        String[] reply;
+        AssemblerServer.writeMessage(out, request);
+        out.flush();
+        reply = AssemblerServer.readMessage(in);
+        if (reply == null || reply.length == 0) {
+            throw new IOException("no reply");
+        }
+        if ("assemble".equals(request[0]) && !"error".equals(reply[0]) && reply.length < 7) {
+            throw new IOException("short reply");
+        }
+        return reply;
+    }
+
+    /**
+     * Assembles the files in this JVM, for when there is no server
+     * @return the number of files that failed
+     */
+    private static int assembleHere(List<File> files, AssemblerOptions options) {
+        try {
+            return new BatchAssembler(SicAssembler.loadOPTable(options), options).run(files);
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            return files.size();
+        }
+    }
+}// end Class AssemblerClient
@@ -0,0 +1,445 @@
+package assembler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options for a run of the assembler
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblerOptions {
+
+    private List<String> sourceFiles = new ArrayList<String>();
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private String include = "*.asm";
+    private int bufferSize = OutputChannel.DEFAULT_BUFFER_SIZE;
+    private boolean keepIntermediate;
+    private String opcodeList;
+    private boolean sequential;
+    private boolean memoryMapped;
+    private boolean onePass;
+    private boolean watch;
+    private String cacheDirectory;
+    private int cacheSize = AssemblyCache.DEFAULT_SIZE_MB;
+    private String statsFormat;
+    private boolean serve;
+    private int port = AssemblerServer.DEFAULT_PORT;
+    private String listingFile;
+    private int writeQueue;
+    private boolean noListing;
+    private boolean listingTable;
+
+    /**
+     * Reads the options out of the command line arguments, every
+     * argument that is not an option is a file, directory or glob to
+     * assemble
+     * @param args the command line arguments
+     * @return the parsed options
+     */
+    public static AssemblerOptions parse(String[] args) {
+        AssemblerOptions options = new AssemblerOptions();
+        for (String arg : args) {
+            if (arg == null || arg.isEmpty()) {
+                continue;
+            }
+            else if (arg.startsWith("--buffer-size=")) {
+                options.setBufferSize(parseSize(arg.substring("--buffer-size=".length()), options.getBufferSize()));
+            }
+            else if (arg.startsWith("--jobs=")) {
+                options.setJobs(parseSize(arg.substring("--jobs=".length()), options.getJobs()));
+            }
+            else if (arg.startsWith("--include=")) {
+                options.setInclude(arg.substring("--include=".length()));
+            }
+            else if (arg.startsWith("--opcodes=")) {
+                options.setOpcodeList(arg.substring("--opcodes=".length()));
+            }
+            else if ("--sequential".equals(arg)) {
+                options.setSequential(true);
+            }
+            else if ("--cache".equals(arg)) {
+                options.setCacheDirectory(AssemblyCache.DEFAULT_DIRECTORY);
+            }
+            else if (arg.startsWith("--cache=")) {
+                options.setCacheDirectory(arg.substring("--cache=".length()));
+            }
+            else if (arg.startsWith("--cache-size=")) {
+                options.setCacheSize(parseSize(arg.substring("--cache-size=".length()), options.getCacheSize()));
+            }
+            else if ("--stats".equals(arg)) {
+                options.setStatsFormat("text");
+            }
+            else if ("--stats=json".equals(arg) || "--stats=text".equals(arg)) {
+                options.setStatsFormat(arg.substring("--stats=".length()));
+            }
+            else if ("--watch".equals(arg)) {
+                options.setWatch(true);
+            }
+            else if ("--one-pass".equals(arg)) {
+                options.setOnePass(true);
+            }
+            else if ("--mmap".equals(arg)) {
+                options.setMemoryMapped(true);
+            }
+            else if ("--keep-imd".equals(arg)) {
+                options.setKeepIntermediate(true);
+            }
+            else if ("--async-write".equals(arg)) {
+                options.setWriteQueue(AsyncOutput.DEFAULT_QUEUE_SIZE);
+            }
+            else if (arg.startsWith("--async-write=")) {
+                options.setWriteQueue(parseSize(arg.substring("--async-write=".length()), AsyncOutput.DEFAULT_QUEUE_SIZE));
+            }
+            else if ("--no-listing".equals(arg)) {
+                options.setNoListing(true);
+                options.setListingTable(true);
+            }
+            else if ("--no-listing=bare".equals(arg)) {
+                options.setNoListing(true);
+                options.setListingTable(false);
+            }
+            else if (arg.startsWith("--listing=")) {
+                options.setListingFile(arg.substring("--listing=".length()));
+            }
+            else if ("--serve".equals(arg)) {
+                options.setServe(true);
+            }
+            else if (arg.startsWith("--port=")) {
+                options.setPort(parseSize(arg.substring("--port=".length()), options.getPort()));
+            }
+            else if (arg.startsWith("--")) {
+                System.out.println("Unknown option: " + arg);
+            }
+            else {
+                options.getSourceFiles().add(arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Parses a positive size, keeping the old value when it isn't one
+     * @param value
+     * @param fallback
+     * @return int size
+     */
+    private static int parseSize(String value, int fallback) {
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size > 0) {
+                return size;
+            }
+        }
+        catch (NumberFormatException ex) {
+            // Fall through to the message below
+        }
+        System.out.println("Invalid size: " + value);
+        return fallback;
+    }
+
+    /**
+     * Get the first source file
+     * @return the first source file, or null if none were given
+     */
+    public String getSourceFile() {
+        return sourceFiles.isEmpty() ? null : sourceFiles.get(0);
+    }
+
+    /**
+     * Get the value of sourceFiles
+     * @return the files, directories and globs to assemble
+     */
+    public List<String> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    /**
+     * Get the value of jobs
+     * @return how many files a batch assembles at once
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Set the value of jobs
+     * @param jobs new value of jobs
+     */
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Get the value of include
+     * @return glob for the file names picked up from a directory
+     */
+    public String getInclude() {
+        return include;
+    }
+
+    /**
+     * Set the value of include
+     * @param include new value of include
+     */
+    public void setInclude(String include) {
+        this.include = include;
+    }
+
+    /**
+     * Get the value of opcodeList
+     * @return the opcode list file to use instead of the built in table, or null
+     */
+    public String getOpcodeList() {
+        return opcodeList;
+    }
+
+    /**
+     * Set the value of opcodeList
+     * @param opcodeList new value of opcodeList
+     */
+    public void setOpcodeList(String opcodeList) {
+        this.opcodeList = opcodeList;
+    }
+
+    /**
+     * Get the value of sequential
+     * @return true to keep each pass on a single thread
+     */
+    public boolean isSequential() {
+        return sequential;
+    }
+
+    /**
+     * Set the value of sequential
+     * @param sequential new value of sequential
+     */
+    public void setSequential(boolean sequential) {
+        this.sequential = sequential;
+    }
+
+    /**
+     * Get the value of cacheDirectory
+     * @return where assembled output is cached, or null for no cache
+     */
+    public String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Set the value of cacheDirectory
+     * @param cacheDirectory new value of cacheDirectory
+     */
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Get the value of cacheSize
+     * @return the most the cache holds, in megabytes
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Set the value of cacheSize
+     * @param cacheSize new value of cacheSize
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Get the value of statsFormat
+     * @return "text" or "json" to print timings and counters for every file, or null
+     */
+    public String getStatsFormat() {
+        return statsFormat;
+    }
+
+    /**
+     * Set the value of statsFormat
+     * @param statsFormat new value of statsFormat
+     */
+    public void setStatsFormat(String statsFormat) {
+        this.statsFormat = statsFormat;
+    }
+
+    /**
+     * Get the value of watch
+     * @return true to keep reassembling the files as they change
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Set the value of watch
+     * @param watch new value of watch
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Get the value of onePass
+     * @return true to assemble in a single load and go pass
+     */
+    public boolean isOnePass() {
+        return onePass;
+    }
+
+    /**
+     * Set the value of onePass
+     * @param onePass new value of onePass
+     */
+    public void setOnePass(boolean onePass) {
+        this.onePass = onePass;
+    }
+
+    /**
+     * Get the value of memoryMapped
+     * @return true to memory map source files instead of reading them
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Set the value of memoryMapped
+     * @param memoryMapped new value of memoryMapped
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Get the value of keepIntermediate
+     * @return true when the .imd file should be written for debugging
+     */
+    public boolean isKeepIntermediate() {
+        return keepIntermediate;
+    }
+
+    /**
+     * Set the value of keepIntermediate
+     * @param keepIntermediate new value of keepIntermediate
+     */
+    public void setKeepIntermediate(boolean keepIntermediate) {
+        this.keepIntermediate = keepIntermediate;
+    }
+
+    /**
+     * Get the value of bufferSize
+     * @return size of the read and write buffers
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Set the value of bufferSize
+     * @param bufferSize new value of bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Get the value of serve
+     * @return true to run as an AssemblerServer instead of assembling files
+     */
+    public boolean isServe() {
+        return serve;
+    }
+
+    /**
+     * Set the value of serve
+     * @param serve new value of serve
+     */
+    public void setServe(boolean serve) {
+        this.serve = serve;
+    }
+
+    /**
+     * Get the value of port
+     * @return the loopback port the server listens on and the client connects to
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Set the value of port
+     * @param port new value of port
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Get the value of listingFile
+     * @return where the listing goes when assembling standard input, such
+     * as /dev/fd/3; null to leave it out
+     */
+    public String getListingFile() {
+        return listingFile;
+    }
+
+    /**
+     * Set the value of listingFile
+     * @param listingFile new value of listingFile
+     */
+    public void setListingFile(String listingFile) {
+        this.listingFile = listingFile;
+    }
+
+    /**
+     * Get the value of writeQueue
+     * @return how many buffers may wait for the writer thread, 0 to
+     * write on the assembling thread
+     */
+    public int getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Set the value of writeQueue
+     * @param writeQueue new value of writeQueue
+     */
+    public void setWriteQueue(int writeQueue) {
+        this.writeQueue = writeQueue;
+    }
+
+    /**
+     * Get the value of noListing
+     * @return true to leave out the .lst file
+     */
+    public boolean isNoListing() {
+        return noListing;
+    }
+
+    /**
+     * Set the value of noListing
+     * @param noListing new value of noListing
+     */
+    public void setNoListing(boolean noListing) {
+        this.noListing = noListing;
+    }
+
+    /**
+     * Get the value of listingTable
+     * @return true to write a ListingTable in place of a left out listing
+     */
+    public boolean isListingTable() {
+        return listingTable;
+    }
+
+    /**
+     * Set the value of listingTable
+     * @param listingTable new value of listingTable
+     */
+    public void setListingTable(boolean listingTable) {
+        this.listingTable = listingTable;
+    }
+}// end Class AssemblerOptions
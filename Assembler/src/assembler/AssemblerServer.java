@@ -0,0 +1,264 @@
+package assembler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps a JVM running with the opcode table loaded and assembles sources
+ * sent to it over a loopback socket, so a tool that assembles many small
+ * files doesn't pay for starting a JVM each time; AssemblerClient is the
+ * other end. Started with --serve [--port=N].
+ *
+ * Every message, either way, is a field count and then the fields, each
+ * an int length (-1 for null) and that many bytes of UTF-8, all written
+ * with DataOutputStream. A connection can send any number of requests and
+ * gets one reply to each, in order:
+ *
+ *     assemble NAME OPTIONS SOURCE
+ *         ok|failed ERROR OBJECT LISTING IMD STATS DIAGNOSTICS
+ *     ping    ok
+ *     stop    ok, and the server exits
+ *
+ * OPTIONS are command line options, one per line, that apply to that
+ * source only (--one-pass, --keep-imd, --stats ...); the opcode table is
+ * always the server's. ERROR is what stopped a failed assembly, IMD and
+ * STATS are null unless asked for, DIAGNOSTICS has one error per line. A
+ * request the server can't make sense of gets "error MESSAGE". Only the
+ * loopback address is listened on, and at most --jobs sources are
+ * assembled at once.
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblerServer {
+
+    public static final int DEFAULT_PORT = 3404;
+    // Limits on a message, so a stray connection can't run the server out of memory
+    private static final int MAX_FIELDS = 16;
+    private static final int MAX_FIELD_LENGTH = 256 * 1024 * 1024;
+
+    private OPTable opcodes;
+    private AssemblerOptions options;
+    private Semaphore assemblers;
+    private ServerSocket socket;
+    private volatile boolean stopping;
+
+    /**
+     * @param opcodes the table every source is assembled against
+     * @param options the port and the number of jobs
+     */
+    public AssemblerServer(OPTable opcodes, AssemblerOptions options) {
+        this.opcodes = opcodes;
+        this.options = options;
+        this.assemblers = new Semaphore(Math.max(1, options.getJobs()));
+    }
+
+    /**
+     * Listens for connections until a stop request comes in
+     * @throws IOException if the port can't be listened on
+     */
+    public void serve() throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "assembler-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.socket = new ServerSocket(options.getPort(), 50, InetAddress.getLoopbackAddress());
+        System.out.printf("Listening on %s:%d%n", this.socket.getInetAddress().getHostAddress(), this.socket.getLocalPort());
+        try {
+            while (!this.stopping) {
+                final Socket connection;
+                try {
+                    connection = this.socket.accept();
+                }
+                catch (SocketException ex) {
+                    if (this.stopping) {
+                        break;
+                    }
+                    throw ex;
+                }
+                connections.execute(() -> this.handle(connection));
+            }
+        }
+        finally {
+            connections.shutdownNow();
+            this.socket.close();
+        }
+    }
+
+    /**
+     * Stops serve(), connections still open are dropped
+     */
+    public void stop() {
+        this.stopping = true;
+        try {
+            if (this.socket != null) {
+                this.socket.close();
+            }
+        }
+        catch (IOException ex) {
+            // Closing it is all that was wanted
+        }
+    }
+
+    /**
+     * Get the port being listened on
+     * @return the port, or -1 before serve() has started
+     */
+    public int getPort() {
+        return (this.socket != null) ? this.socket.getLocalPort() : -1;
+    }
+
+    /**
+     * Answers the requests on one connection until the other end closes it
+     * @param connection
+     */
+    private void handle(Socket connection) {
+        String[] request;
+        try {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while ((request = readMessage(in)) != null) {
+                writeMessage(out, this.reply(request));
+                out.flush();
+                if (request.length > 0 && "stop".equals(request[0])) {
+                    this.stop();
+                }
+            }
+        }
+        catch (IOException ex) {
+            if (!this.stopping) {
+                System.out.println("Connection dropped: " + ex.getMessage());
+            }
+        }
+        finally {
+            try {
+                connection.close();
+            }
+            catch (IOException ex) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Carries out one request
+     * @param request
+     * @return the reply
+     */
+    private String[] reply(String[] request) {
+        String command = (request.length > 0) ? request[0] : null;
+        if ("assemble".equals(command) && request.length == 4 && request[3] != null) {
+            return this.assemble(request[1], request[2], request[3]);
+        }
+        else if ("ping".equals(command) || "stop".equals(command)) {
+            return new String[] {"ok"};
+        }
+        else {
+            return new String[] {"error", "Unknown request: " + command};
+        }
+    }
+
+    private String[] assemble(String name, String optionLines, String source) {
+        AssemblerOptions sourceOptions = AssemblerOptions.parse((optionLines == null) ? new String[0] : optionLines.split("\n"));
+        StringBuilder diagnostics = new StringBuilder();
+        AssemblyResult result;
+        String stats = null;
+        String error = null;
+
+        try {
+            this.assemblers.acquireUninterruptibly();
+            try {
+                result = new InMemoryAssembler(this.opcodes, sourceOptions).assemble((name == null) ? "source" : name, source);
+            }
+            finally {
+                this.assemblers.release();
+            }
+        }
+        catch (RuntimeException ex) {
+            return new String[] {"error", ex.toString()};
+        }
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            diagnostics.append(diagnostic).append('\n');
+        }
+        if (!result.isSuccess() && !result.getDiagnostics().isEmpty()) {
+            // What stopped it is always the last one
+            error = result.getDiagnostics().get(result.getDiagnostics().size() - 1).getMessage();
+        }
+        if ("json".equals(sourceOptions.getStatsFormat())) {
+            stats = result.getStats().toJson(result.getName());
+        }
+        else if (sourceOptions.getStatsFormat() != null) {
+            stats = result.getStats().toText(result.getName());
+        }
+        return new String[] {result.isSuccess() ? "ok" : "failed", error, result.getObject(), result.getListing(),
+            result.getIntermediate(), stats, diagnostics.toString()};
+    }
+
+    /**
+     * Reads one message
+     * @param in
+     * @return the fields, or null if the stream ended between messages
+     * @throws IOException if it ended part way through one, or it is too big
+     */
+    static String[] readMessage(DataInputStream in) throws IOException {
+        int count;
+        int length;
+        byte[] bytes;
+        String[] fields;
+        try {
+            count = in.readInt();
+        }
+        catch (EOFException ex) {
+            return null;
+        }
+        if (count < 0 || count > MAX_FIELDS) {
+            throw new IOException("Bad message, " + count + " fields");
+        }
+        fields = new String[count];
+        for (int i = 0; i < count; i++) {
+            length = in.readInt();
+            if (length < -1 || length > MAX_FIELD_LENGTH) {
+                throw new IOException("Bad message, field of " + length + " bytes");
+            }
+            if (length >= 0) {
+                bytes = new byte[length];
+                in.readFully(bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Writes one message, the caller flushes it
+     * @param out
+     * @param fields
+     * @throws IOException
+     */
+    static void writeMessage(DataOutputStream out, String... fields) throws IOException {
+        byte[] bytes;
+        out.writeInt(fields.length);
+        for (String field : fields) {
+            if (field == null) {
+                out.writeInt(-1);
+            }
+            else {
+                bytes = field.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}// end Class AssemblerServer
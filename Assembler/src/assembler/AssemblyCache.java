@@ -0,0 +1,270 @@
+package assembler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An on disk cache of assembler output, so a source that hasn't changed
+ * doesn't have to be assembled again
+ *
+ * Entries are keyed by a SHA-256 of everything the output depends on: the
+ * source bytes, the opcode list (or the assembler's own classes, which
+ * the built in table is compiled into), and the options that change the
+ * output. Each entry is a directory holding the .lst and .obj (and .imd)
+ * files, or the .lsx table in place of the listing; a hit copies them out
+ * and touches the directory, and when the cache grows past its size the
+ * least recently used entries are removed.
+ * Safe to share between threads.
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblyCache {
+
+    public static final String DEFAULT_DIRECTORY = ".asm-cache";
+    public static final int DEFAULT_SIZE_MB = 64;
+    // Classes whose code decides what the output looks like
+    private static final Class<?>[] ASSEMBLER_CLASSES = {
+        SicAssembler.class, OPCodeDictionary.class, OPHashTable.class, OPCode.class,
+        LineLexer.class, HashTable.class, DataItem.class, IntermediateLine.class,
+        EncodedChunk.class, AssembledLine.class, FixUp.class, HeldLine.class,
+        HexEncoder.class, TextRecordBuilder.class, ListingTable.class, LineReader.class
+    };
+    private static final String[] EXTENSIONS = {".lst", ".obj", ".imd", ListingTable.EXTENSION};
+    private static byte[] assemblerFingerprint;
+
+    private File directory;
+    private long maxBytes;
+
+    /**
+     * @param directory where the entries are kept, made if it doesn't exist
+     * @param maxBytes the size the cache is trimmed back to
+     */
+    public AssemblyCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache asked for by the options
+     * @param options
+     * @return the cache, or null when caching is off
+     */
+    public static AssemblyCache forOptions(AssemblerOptions options) {
+        if (options.getCacheDirectory() == null) {
+            return null;
+        }
+        return new AssemblyCache(new File(options.getCacheDirectory()), options.getCacheSize() * 1024L * 1024L);
+    }
+
+    /**
+     * Get the value of directory
+     * @return the value of directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Works out the key of a source file's output
+     * @param source
+     * @param options
+     * @return the key, as hex
+     * @throws IOException
+     */
+    public String key(File source, AssemblerOptions options) throws IOException {
+        MessageDigest digest = newDigest();
+        StringBuilder key = new StringBuilder(64);
+        digest.update(getAssemblerFingerprint());
+        digest.update(String.format("one-pass=%b;imd=%b;no-listing=%b;table=%b;", options.isOnePass(), options.isKeepIntermediate(),
+                options.isNoListing(), options.isListingTable()).getBytes("UTF-8"));
+        if (options.getOpcodeList() != null) {
+            digest.update(Files.readAllBytes(new File(options.getOpcodeList()).toPath()));
+        }
+        digest.update((byte) 0);
+        digest.update(Files.readAllBytes(source.toPath()));
+        for (byte b : digest.digest()) {
+            HexEncoder.append(key, b & 0xFF, 2);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Copies a cached entry's files out as baseName.lst, baseName.obj ...
+     * Outputs the entry doesn't have are removed, so none are left over
+     * from an earlier run.
+     * @param key
+     * @param baseName
+     * @return false if there is no entry for the key, or it was removed
+     * while being copied
+     */
+    public boolean restore(String key, String baseName) {
+        File entry = new File(this.directory, key);
+        if (!entry.isDirectory()) {
+            return false;
+        }
+        try {
+            // Every entry has an object program, one without was trimmed
+            Files.copy(new File(entry, "out.obj").toPath(), new File(baseName + ".obj").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            for (String extension : EXTENSIONS) {
+                File cached = new File(entry, "out" + extension);
+                File output = new File(baseName + extension);
+                if (".obj".equals(extension)) {
+                    continue;
+                }
+                if (cached.exists()) {
+                    Files.copy(cached.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                else {
+                    Files.deleteIfExists(output.toPath());
+                }
+            }
+            entry.setLastModified(System.currentTimeMillis());
+            return true;
+        }
+        catch (IOException ex) {
+            // Evicted while copying, assemble it instead
+            return false;
+        }
+    }
+
+    /**
+     * Stores the files just written for baseName, then trims the cache
+     * @param key
+     * @param baseName
+     */
+    public void store(String key, String baseName) {
+        this.store(key, baseName, EXTENSIONS);
+    }
+
+    /**
+     * Stores the files just written for baseName, then trims the cache
+     * @param key
+     * @param baseName
+     * @param extensions the outputs the run wrote, others with the same
+     * base name are left over from earlier runs
+     */
+    public void store(String key, String baseName, String[] extensions) {
+        File entry = new File(this.directory, key);
+        File temp = new File(this.directory, ".tmp-" + key + "-" + Thread.currentThread().getId());
+        try {
+            Files.createDirectories(temp.toPath());
+            for (String extension : extensions) {
+                File output = new File(baseName + extension);
+                if (output.exists()) {
+                    Files.copy(output.toPath(), new File(temp, "out" + extension).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (!temp.renameTo(entry)) {
+                // Somebody else stored it first
+                delete(temp);
+            }
+            this.trim();
+        }
+        catch (IOException ex) {
+            System.out.println("Could not cache " + baseName + ": " + ex.getMessage());
+            delete(temp);
+        }
+    }
+
+    /**
+     * Removes least recently used entries until the cache fits in maxBytes
+     */
+    public synchronized void trim() {
+        long total = 0;
+        List<File> entries = new ArrayList<File>();
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File entry : files) {
+            if (entry.isDirectory() && !entry.getName().startsWith(".")) {
+                entries.add(entry);
+                total += size(entry);
+            }
+        }
+        if (total <= this.maxBytes) {
+            return;
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File entry : entries) {
+            if (total <= this.maxBytes) {
+                break;
+            }
+            total -= size(entry);
+            delete(entry);
+        }
+    }
+
+    private static long size(File entry) {
+        long total = 0;
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    private static void delete(File entry) {
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        entry.delete();
+    }
+
+    /**
+     * A digest of the class files that make the output, worked out once
+     * @return byte[]
+     * @throws IOException
+     */
+    private static synchronized byte[] getAssemblerFingerprint() throws IOException {
+        if (assemblerFingerprint == null) {
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[8192];
+            for (Class<?> type : ASSEMBLER_CLASSES) {
+                digest.update(type.getName().getBytes("UTF-8"));
+                InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class");
+                if (in == null) {
+                    continue;
+                }
+                try {
+                    for (int count = in.read(buffer); count > 0; count = in.read(buffer)) {
+                        digest.update(buffer, 0, count);
+                    }
+                }
+                finally {
+                    in.close();
+                }
+            }
+            assemblerFingerprint = digest.digest();
+        }
+        return assemblerFingerprint;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            // Every Java platform has to provide SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}// end Class AssemblyCache
@@ -0,0 +1,111 @@
+package assembler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything an in memory assembly produced: what would have gone in the
+ * .obj, .lst and .imd files, the symbol table and the errors
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblyResult {
+    private String name;
+    private boolean success;
+    private String object;
+    private String listing;
+    private String intermediate;
+    private Map<String, Integer> symbols;
+    private List<Diagnostic> diagnostics;
+    private AssemblyStats stats;
+
+    /**
+     * @param name the name the source was given
+     * @param success true if the assembly ran to the end
+     * @param object the object program
+     * @param listing
+     * @param intermediate the intermediate file, null unless asked for
+     * @param symbols address of every label
+     * @param diagnostics
+     * @param stats
+     */
+    public AssemblyResult(String name, boolean success, String object, String listing, String intermediate,
+            Map<String, Integer> symbols, List<Diagnostic> diagnostics, AssemblyStats stats) {
+        this.name = name;
+        this.success = success;
+        this.object = object;
+        this.listing = listing;
+        this.intermediate = intermediate;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+        this.stats = stats;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the value of success
+     * @return true if the assembly ran to the end, there may still be diagnostics
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Get the value of object
+     * @return the object program's H, T and E records
+     */
+    public String getObject() {
+        return object;
+    }
+
+    /**
+     * Get the object program the way it would be in the .obj file
+     * @return byte[]
+     */
+    public byte[] getObjectBytes() {
+        return object.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Get the value of listing
+     * @return the listing, null with --no-listing
+     */
+    public String getListing() {
+        return listing;
+    }
+
+    /**
+     * Get the value of intermediate
+     * @return the intermediate file, null unless --keep-imd was set
+     */
+    public String getIntermediate() {
+        return intermediate;
+    }
+
+    /**
+     * Get the value of symbols
+     * @return the address of every label, in address order
+     */
+    public Map<String, Integer> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Get the value of diagnostics
+     * @return the errors, in the order they are listed
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Get the value of stats
+     * @return timings and counters, lookups are only counted with --stats
+     */
+    public AssemblyStats getStats() {
+        return stats;
+    }
+}// end Class AssemblyResult
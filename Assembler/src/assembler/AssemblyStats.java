@@ -0,0 +1,390 @@
+package assembler;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Timings and counters for one run of the assembler, printed by --stats
+ *
+ * Phases are timed one after another on the thread running the assembly
+ * and are reported in the order they first ran; a phase that runs more
+ * than once adds up. A phase that throws runs on until the next one
+ * starts, so a failed run still shows where its time went. The symbol and
+ * opcode lookups can come from several threads and are counted through
+ * ProbeStats.
+ * @author Michael Frederick (n00725913)
+ */
+public class AssemblyStats {
+    private Map<String, Long> phases = new LinkedHashMap<String, Long>();
+    private long started;
+    private String phase;
+    private long phaseStarted;
+    private long total;
+    private long lines;
+    private long bytesRead;
+    private long bytesWritten;
+    private long errors;
+    private int symbolCount;
+    private int symbolCapacity;
+    private double symbolLoad;
+    private ProbeStats labelProbes = new ProbeStats();
+    private boolean opcodeTable;
+    private int opcodeCount;
+    private int opcodeCapacity;
+    private double opcodeLoad;
+    private ProbeStats opcodeEntryProbes = new ProbeStats();
+    private ProbeStats opcodeInserts = new ProbeStats();
+    private boolean cached;
+    private boolean success;
+    private ProbeStats symbolProbes = new ProbeStats();
+    private ProbeStats symbolInserts = new ProbeStats();
+    private ProbeStats opcodeProbes = new ProbeStats();
+
+    /**
+     * Starts the clock for the whole run
+     */
+    public AssemblyStats() {
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * Starts timing a phase, ending the one before it
+     * @param phase
+     */
+    public void startPhase(String phase) {
+        long now = System.nanoTime();
+        this.endPhase(now);
+        this.phase = phase;
+        this.phaseStarted = now;
+    }
+
+    /**
+     * Ends the phase being timed, if there is one
+     */
+    public void endPhase() {
+        this.endPhase(System.nanoTime());
+    }
+
+    private void endPhase(long now) {
+        Long before;
+        if (this.phase != null) {
+            before = this.phases.get(this.phase);
+            this.phases.put(this.phase, (before == null) ? now - this.phaseStarted : before + now - this.phaseStarted);
+            this.phase = null;
+        }
+    }
+
+    /**
+     * Stops the clock for the whole run
+     * @param success whether the run got to the end
+     */
+    public void finish(boolean success) {
+        this.endPhase();
+        this.total = System.nanoTime() - this.started;
+        this.success = success;
+    }
+
+    /**
+     * Get the time spent in each phase
+     * @return nanoseconds by phase name
+     */
+    public Map<String, Long> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Get the value of total
+     * @return nanoseconds from construction to finish()
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void addLines(long count) {
+        this.lines += count;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void addBytesRead(long count) {
+        this.bytesRead += count;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public void addBytesWritten(long count) {
+        this.bytesWritten += count;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Counts a listing line that carries an error
+     */
+    public void addError() {
+        this.errors++;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Takes the size and load of the symbol table the run ended up with,
+     * and how long a search for each of its labels is
+     * @param symbols
+     */
+    public void setSymbolTable(HashTable symbols) {
+        this.symbolCount = symbols.size();
+        this.symbolCapacity = symbols.getCapacity();
+        this.symbolLoad = symbols.getLoadFactor();
+        this.labelProbes = symbols.measureProbes();
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public int getSymbolCapacity() {
+        return symbolCapacity;
+    }
+
+    public double getSymbolLoad() {
+        return symbolLoad;
+    }
+
+    /**
+     * Get the value of labelProbes
+     * @return one lookup per label in the symbol table, as measured at the end
+     */
+    public ProbeStats getLabelProbes() {
+        return labelProbes;
+    }
+
+    /**
+     * Takes the size and load of the opcode table, how long a search for
+     * each of its opcodes is and how long inserting them was. Only an
+     * OPHashTable read from a file has these; the built in dictionary is
+     * left out of the report.
+     * @param opcodes
+     */
+    public void setOPTable(OPTable opcodes) {
+        OPHashTable table;
+        if (!(opcodes instanceof OPHashTable)) {
+            return;
+        }
+        table = (OPHashTable) opcodes;
+        this.opcodeTable = true;
+        this.opcodeCount = table.getOccupiedSlots();
+        this.opcodeCapacity = table.getCapacity();
+        this.opcodeLoad = table.getLoadFactor();
+        this.opcodeEntryProbes = table.measureProbes();
+        if (table.getInsertStats() != null) {
+            this.opcodeInserts = table.getInsertStats();
+        }
+    }
+
+    /**
+     * Get the value of opcodeTable
+     * @return true when the opcode table's figures were taken
+     */
+    public boolean hasOPTable() {
+        return opcodeTable;
+    }
+
+    public int getOpcodeCount() {
+        return opcodeCount;
+    }
+
+    public int getOpcodeCapacity() {
+        return opcodeCapacity;
+    }
+
+    public double getOpcodeLoad() {
+        return opcodeLoad;
+    }
+
+    /**
+     * Get the value of opcodeEntryProbes
+     * @return one lookup per opcode in the table, as measured at the end
+     */
+    public ProbeStats getOpcodeEntryProbes() {
+        return opcodeEntryProbes;
+    }
+
+    /**
+     * Get the value of opcodeInserts
+     * @return the inserts made building the table
+     */
+    public ProbeStats getOpcodeInserts() {
+        return opcodeInserts;
+    }
+
+    /**
+     * Set the value of cached
+     * @param cached true when the output came out of the cache
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public ProbeStats getSymbolProbes() {
+        return symbolProbes;
+    }
+
+    public ProbeStats getSymbolInserts() {
+        return symbolInserts;
+    }
+
+    public ProbeStats getOpcodeProbes() {
+        return opcodeProbes;
+    }
+
+    /**
+     * The report for a person to read
+     * @param name what was assembled
+     * @return the report, several lines
+     */
+    public String toText(String name) {
+        StringBuilder out = new StringBuilder(512);
+        out.append(name).append(": stats").append(this.cached ? " (from cache)" : "").append(System.lineSeparator());
+        for (Map.Entry<String, Long> phase : this.phases.entrySet()) {
+            line(out, phase.getKey(), String.format(Locale.ROOT, "%.3f ms", phase.getValue() / 1e6));
+        }
+        line(out, "total", String.format(Locale.ROOT, "%.3f ms", this.total / 1e6));
+        line(out, "lines", Long.toString(this.lines));
+        if (this.total > 0 && this.lines > 0) {
+            line(out, "lines/sec", String.format(Locale.ROOT, "%.0f", this.lines / (this.total / 1e9)));
+        }
+        line(out, "bytes read", Long.toString(this.bytesRead));
+        line(out, "bytes written", Long.toString(this.bytesWritten));
+        line(out, "symbols", String.format(Locale.ROOT, "%d in %d slots, load %.2f", this.symbolCount, this.symbolCapacity, this.symbolLoad));
+        line(out, "label probes", lookups(this.labelProbes));
+        line(out, "label histogram", histogram(this.labelProbes));
+        line(out, "symbol inserts", lookups(this.symbolInserts));
+        line(out, "symbol lookups", lookups(this.symbolProbes));
+        line(out, "opcode lookups", lookups(this.opcodeProbes));
+        if (this.opcodeTable) {
+            line(out, "opcodes", String.format(Locale.ROOT, "%d in %d slots, load %.2f", this.opcodeCount, this.opcodeCapacity, this.opcodeLoad));
+            line(out, "opcode probes", lookups(this.opcodeEntryProbes));
+            line(out, "opcode inserts", lookups(this.opcodeInserts));
+            line(out, "opcode histogram", histogram(this.opcodeEntryProbes));
+        }
+        line(out, "errors", Long.toString(this.errors));
+        return out.toString();
+    }
+
+    /**
+     * The report as a single line JSON object
+     * @param name what was assembled
+     * @return the report
+     */
+    public String toJson(String name) {
+        StringBuilder out = new StringBuilder(512);
+        boolean first = true;
+        out.append("{\"file\":");
+        quote(out, name);
+        out.append(",\"success\":").append(this.success);
+        out.append(",\"cached\":").append(this.cached);
+        out.append(",\"phases_ms\":{");
+        for (Map.Entry<String, Long> phase : this.phases.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            quote(out, phase.getKey());
+            out.append(':').append(String.format(Locale.ROOT, "%.3f", phase.getValue() / 1e6));
+        }
+        out.append("},\"total_ms\":").append(String.format(Locale.ROOT, "%.3f", this.total / 1e6));
+        out.append(",\"lines\":").append(this.lines);
+        out.append(",\"bytes_read\":").append(this.bytesRead);
+        out.append(",\"bytes_written\":").append(this.bytesWritten);
+        out.append(",\"symbols\":").append(this.symbolCount);
+        out.append(",\"symbol_capacity\":").append(this.symbolCapacity);
+        out.append(",\"symbol_load\":").append(String.format(Locale.ROOT, "%.4f", this.symbolLoad));
+        probes(out, "label", this.labelProbes);
+        probes(out, "symbol_insert", this.symbolInserts);
+        probes(out, "symbol", this.symbolProbes);
+        probes(out, "opcode", this.opcodeProbes);
+        if (this.opcodeTable) {
+            out.append(",\"opcodes\":").append(this.opcodeCount);
+            out.append(",\"opcode_capacity\":").append(this.opcodeCapacity);
+            out.append(",\"opcode_load\":").append(String.format(Locale.ROOT, "%.4f", this.opcodeLoad));
+            probes(out, "opcode_entry", this.opcodeEntryProbes);
+            probes(out, "opcode_insert", this.opcodeInserts);
+        }
+        out.append(",\"errors\":").append(this.errors);
+        out.append('}').append(System.lineSeparator());
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String label, String value) {
+        out.append(String.format("  %-16s %s", label, value)).append(System.lineSeparator());
+    }
+
+    private static String lookups(ProbeStats probes) {
+        return String.format(Locale.ROOT, "%d (%d probes, %.2f per lookup, max %d)",
+                probes.getLookups(), probes.getProbes(), probes.getMeanProbes(), probes.getMaxProbes());
+    }
+
+    /**
+     * How many lookups took 1, 2, 3... probes, the last count taking in
+     * the longer ones too
+     */
+    private static String histogram(ProbeStats probes) {
+        StringBuilder out = new StringBuilder();
+        long[] histogram = probes.getHistogram();
+        for (int i = 1; i < histogram.length; i++) {
+            out.append((i > 1) ? " " : "").append(histogram[i]);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends name_lookups, name_probes, name_max_probes and
+     * name_histogram to a JSON object
+     */
+    private static void probes(StringBuilder out, String name, ProbeStats probes) {
+        long[] histogram = probes.getHistogram();
+        out.append(",\"").append(name).append("_lookups\":").append(probes.getLookups());
+        out.append(",\"").append(name).append("_probes\":").append(probes.getProbes());
+        out.append(",\"").append(name).append("_max_probes\":").append(probes.getMaxProbes());
+        out.append(",\"").append(name).append("_histogram\":[");
+        for (int i = 0; i < histogram.length; i++) {
+            out.append((i > 0) ? "," : "").append(histogram[i]);
+        }
+        out.append(']');
+    }
+
+    private static void quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}// end Class AssemblyStats
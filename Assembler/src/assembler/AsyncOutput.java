@@ -0,0 +1,288 @@
+package assembler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A background thread that does the writing for the outputs of one run,
+ * so the assembler can go on encoding while what it encoded before is
+ * still going to disk. Used with --async-write.
+ *
+ * Each output is a Writer from open() that fills a buffer and hands it
+ * to the thread when full, through a bounded queue shared by the
+ * outputs; when the queue is full the assembler waits, so a slow disk
+ * slows it down instead of filling the heap, and the written buffers are
+ * given back to be filled again. Buffers are written in the order they
+ * were handed over. flush() and close() wait until everything before them
+ * has been written. Once the thread fails to write, the rest of the
+ * output is dropped and every write, flush or close after that throws
+ * the IOException, so the error isn't lost on the other thread.
+ * @author Michael Frederick (n00725913)
+ */
+public class AsyncOutput implements Closeable {
+
+    public static final int DEFAULT_QUEUE_SIZE = 8;
+
+    private static final int WRITE = 0;
+    private static final int FLUSH = 1;
+    private static final int CLOSE = 2;
+    private static final int STOP = 3;
+
+    private BlockingQueue<Task> queue;
+    private Thread thread;
+    private volatile IOException error;
+
+    /**
+     * Starts the writer thread
+     * @param queueSize how many full buffers may wait to be written
+     */
+    public AsyncOutput(int queueSize) {
+        this.queue = new ArrayBlockingQueue<Task>(Math.max(1, queueSize));
+        this.thread = new Thread(this::run, "assembler-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Writes to target through the writer thread
+     * @param target closed when the returned Writer is
+     * @param bufferSize chars handed over at a time
+     * @return Writer
+     */
+    public Writer open(Writer target, int bufferSize) {
+        return new Sink(target, bufferSize);
+    }
+
+    /**
+     * Get the value of error
+     * @return the first write that failed, or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Stops the thread once everything handed to it has been written;
+     * the outputs should have been closed first
+     * @throws IOException if the thread was interrupted waiting
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.thread.isAlive()) {
+            return;
+        }
+        this.put(new Task(null, STOP, null, 0, null));
+        try {
+            this.thread.join();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the writer thread");
+        }
+    }
+
+    /**
+     * The writer thread: takes each task off the queue and carries it out
+     */
+    private void run() {
+        Task task;
+        while (true) {
+            try {
+                task = this.queue.take();
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+            if (task.kind == STOP) {
+                return;
+            }
+            try {
+                if (task.kind == CLOSE) {
+                    task.sink.target.close();
+                }
+                else if (this.error != null) {
+                    // Output after a failure is dropped
+                }
+                else if (task.kind == WRITE) {
+                    task.sink.target.write(task.chars, 0, task.length);
+                }
+                else {
+                    task.sink.target.flush();
+                }
+            }
+            catch (IOException ex) {
+                if (this.error == null) {
+                    this.error = ex;
+                }
+            }
+            catch (RuntimeException ex) {
+                if (this.error == null) {
+                    this.error = new IOException(ex.toString(), ex);
+                }
+            }
+            finally {
+                if (task.chars != null) {
+                    task.sink.spare.offer(task.chars);
+                }
+                if (task.done != null) {
+                    task.done.countDown();
+                }
+            }
+        }
+    }
+
+    private void put(Task task) throws IOException {
+        try {
+            this.queue.put(task);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the writer thread");
+        }
+    }
+
+    /**
+     * Throws the writer thread's error, if it has had one
+     * @throws IOException
+     */
+    private void check() throws IOException {
+        IOException failed = this.error;
+        if (failed != null) {
+            throw new IOException(failed.getMessage(), failed);
+        }
+    }
+
+    /**
+     * A buffer to write, or a flush, close or stop of the thread
+     */
+    private static class Task {
+        Sink sink;
+        int kind;
+        char[] chars;
+        int length;
+        CountDownLatch done;
+
+        Task(Sink sink, int kind, char[] chars, int length, CountDownLatch done) {
+            this.sink = sink;
+            this.kind = kind;
+            this.chars = chars;
+            this.length = length;
+            this.done = done;
+        }
+    }
+
+    /**
+     * One output, buffered on the assembler's thread
+     */
+    private class Sink extends Writer {
+        private Writer target;
+        private BlockingQueue<char[]> spare;
+        private char[] buffer;
+        private int length;
+        private boolean closed;
+
+        Sink(Writer target, int bufferSize) {
+            this.target = target;
+            this.buffer = new char[Math.max(16, bufferSize)];
+            // Enough that a full queue never leaves one without a buffer
+            this.spare = new ArrayBlockingQueue<char[]>(queue.remainingCapacity() + 2);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (this.length == this.buffer.length) {
+                this.handOver();
+            }
+            this.buffer[this.length++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int count) throws IOException {
+            int part;
+            while (count > 0) {
+                if (this.length == this.buffer.length) {
+                    this.handOver();
+                }
+                part = Math.min(count, this.buffer.length - this.length);
+                System.arraycopy(chars, offset, this.buffer, this.length, part);
+                this.length += part;
+                offset += part;
+                count -= part;
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int count) throws IOException {
+            int part;
+            while (count > 0) {
+                if (this.length == this.buffer.length) {
+                    this.handOver();
+                }
+                part = Math.min(count, this.buffer.length - this.length);
+                text.getChars(offset, offset + part, this.buffer, this.length);
+                this.length += part;
+                offset += part;
+                count -= part;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.handOver();
+            this.waitFor(FLUSH);
+            check();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.handOver();
+            }
+            finally {
+                // Closed even after a failure, so the file isn't left open
+                this.waitFor(CLOSE);
+            }
+            check();
+        }
+
+        /**
+         * Queues the buffer to be written and carries on with a spare one,
+         * waiting if the queue is full
+         */
+        private void handOver() throws IOException {
+            char[] next;
+            check();
+            if (this.length == 0) {
+                return;
+            }
+            next = this.spare.poll();
+            put(new Task(this, WRITE, this.buffer, this.length, null));
+            this.buffer = (next != null) ? next : new char[this.buffer.length];
+            this.length = 0;
+        }
+
+        private void waitFor(int kind) throws IOException {
+            CountDownLatch done = new CountDownLatch(1);
+            put(new Task(this, kind, null, 0, done));
+            try {
+                done.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the writer thread");
+            }
+        }
+    }
+}// end Class AsyncOutput
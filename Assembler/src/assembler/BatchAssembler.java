@@ -0,0 +1,246 @@
+package assembler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Assembles many source files in one run, several at a time
+ *
+ * Every file gets its own SicAssembler (and so its own symbol table and
+ * output files); the opcode table is built once and shared, since the
+ * passes only ever read from it, and so is the cache if there is one.
+ * @author Michael Frederick (n00725913)
+ */
+public class BatchAssembler {
+
+    // How often watch() looks for changed files, in milliseconds
+    private static final long WATCH_INTERVAL = 500;
+
+    private OPTable opcodes;
+    private AssemblerOptions options;
+    private AssemblyCache cache;
+
+    /**
+     * @param opcodes the table every file is assembled against
+     * @param options
+     */
+    public BatchAssembler(OPTable opcodes, AssemblerOptions options) {
+        this.opcodes = opcodes;
+        this.options = options;
+        this.cache = AssemblyCache.forOptions(options);
+    }
+
+    /**
+     * Assembles the files on a pool of options.getJobs() workers
+     * @param files
+     * @return the number of files that failed
+     */
+    public int run(List<File> files) {
+        List<File> accepted = checkOutputs(files);
+        int failures = files.size() - accepted.size();
+
+        if (accepted.size() <= 1 || options.getJobs() <= 1) {
+            for (File file : accepted) {
+                failures += report(file, this.newAssembler(file).assemble());
+            }
+        }
+        else {
+            failures += runParallel(accepted);
+        }
+
+        if (files.size() > 1) {
+            System.out.printf("Assembled %d of %d files%n", files.size() - failures, files.size());
+        }
+        return failures;
+    }
+
+    /**
+     * Assembles the files, then keeps reassembling any of them that
+     * change until the process is stopped. Each file keeps its
+     * SicAssembler, so only the lines an edit affects are encoded again.
+     * @param files
+     */
+    public void watch(List<File> files) {
+        List<File> accepted = checkOutputs(files);
+        List<SicAssembler> assemblers = new ArrayList<SicAssembler>();
+        long[] modified = new long[accepted.size()];
+        SicAssembler assembler;
+        File file;
+
+        for (int i = 0; i < accepted.size(); i++) {
+            file = accepted.get(i);
+            assembler = new SicAssembler(file, opcodes, options);
+            assemblers.add(assembler);
+            modified[i] = file.lastModified();
+            report(file, assembler.reassemble());
+        }
+        System.out.println("Watching for changes, Ctrl-C to stop");
+        while (true) {
+            try {
+                Thread.sleep(WATCH_INTERVAL);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int i = 0; i < accepted.size(); i++) {
+                file = accepted.get(i);
+                if (file.lastModified() != modified[i]) {
+                    modified[i] = file.lastModified();
+                    assembler = assemblers.get(i);
+                    if (report(file, assembler.reassemble()) == 0) {
+                        System.out.printf("%s: reassembled, %d lines encoded%n", file, assembler.getEncodedCount());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Outputs land in the working directory, two sources with the same
+     * base name would write over each other
+     * @param files
+     * @return the files that can be assembled
+     */
+    private List<File> checkOutputs(List<File> files) {
+        List<File> accepted = new ArrayList<File>();
+        Map<String, File> outputs = new HashMap<String, File>();
+        for (File file : files) {
+            File other = outputs.put(SicAssembler.getBaseName(file), file);
+            if (other != null) {
+                System.out.printf("%s: FAILED, its output files would overwrite those of %s%n", file, other);
+            }
+            else {
+                accepted.add(file);
+            }
+        }
+        return accepted;
+    }
+
+    private int runParallel(List<File> files) {
+        int failures = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(options.getJobs(), files.size()));
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        try {
+            for (final File file : files) {
+                results.add(pool.submit(() -> this.newAssembler(file).assemble()));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                boolean success;
+                try {
+                    success = results.get(i).get();
+                }
+                catch (ExecutionException ex) {
+                    ex.getCause().printStackTrace(System.out);
+                    success = false;
+                }
+                failures += report(files.get(i), success);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failures += files.size();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return failures;
+    }
+
+    private SicAssembler newAssembler(File file) {
+        SicAssembler assembler = new SicAssembler(file, opcodes, options);
+        assembler.setCache(this.cache);
+        return assembler;
+    }
+
+    private int report(File file, boolean success) {
+        if (!success) {
+            System.out.printf("%s: FAILED%n", file);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Turns the source arguments into a list of files. A directory gives
+     * every file under it whose name matches the include glob, an argument
+     * with a wildcard is matched as a glob against the paths under its
+     * fixed leading directories, anything else is taken as a file name.
+     * @param args
+     * @param include
+     * @return List of files
+     * @throws IOException
+     */
+    public static List<File> expandSources(List<String> args, String include) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (isGlob(arg)) {
+                files.addAll(matchGlob(arg));
+            }
+            else if (file.isDirectory()) {
+                files.addAll(walk(file.toPath(), FileSystems.getDefault().getPathMatcher("glob:" + include), true));
+            }
+            else {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static List<File> matchGlob(String glob) throws IOException {
+        Path base = Paths.get("");
+        String prefix = "";
+        // Walk from the last directory before the first wildcard
+        for (String part : glob.split("[/\\\\]")) {
+            if (isGlob(part)) {
+                break;
+            }
+            prefix = prefix.isEmpty() ? part : prefix + File.separator + part;
+        }
+        if (!prefix.isEmpty() && new File(prefix).isDirectory()) {
+            base = Paths.get(prefix);
+        }
+        else if (prefix.contains(File.separator)) {
+            base = Paths.get(prefix.substring(0, prefix.lastIndexOf(File.separator)));
+        }
+        return walk(base, FileSystems.getDefault().getPathMatcher("glob:" + glob), false);
+    }
+
+    private static List<File> walk(Path base, final PathMatcher matcher, final boolean byName) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        Files.walkFileTree(base.toString().isEmpty() ? Paths.get(".") : base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                Path name = byName ? path.getFileName() : path.normalize();
+                if (attrs.isRegularFile() && matcher.matches(name)) {
+                    files.add(path.normalize().toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    private static boolean isGlob(String arg) {
+        return arg.indexOf('*') >= 0 || arg.indexOf('?') >= 0 || arg.indexOf('[') >= 0 || arg.indexOf('{') >= 0;
+    }
+}// end Class BatchAssembler
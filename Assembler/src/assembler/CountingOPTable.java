@@ -0,0 +1,51 @@
+package assembler;
+
+/**
+ * An OPTable that counts the lookups made in the table it wraps
+ *
+ * Used when --stats is on so the opcode table, which is shared between
+ * every file in a batch, doesn't have to keep counts itself.
+ * @author Michael Frederick (n00725913)
+ */
+public class CountingOPTable implements OPTable {
+    private OPTable table;
+    private ProbeStats probeStats = new ProbeStats();
+
+    /**
+     * @param table the table to look things up in
+     */
+    public CountingOPTable(OPTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Set the value of probeStats
+     * @param probeStats where lookups are counted from now on
+     */
+    public void setProbeStats(ProbeStats probeStats) {
+        this.probeStats = probeStats;
+    }
+
+    /**
+     * Get the value of table
+     * @return the table being counted
+     */
+    public OPTable getTable() {
+        return table;
+    }
+
+    @Override
+    public int searchForData(String key) {
+        return this.table.searchForData(key, this.probeStats);
+    }
+
+    @Override
+    public int searchForData(String key, ProbeStats stats) {
+        return this.table.searchForData(key, stats);
+    }
+
+    @Override
+    public OPCode getOPCode(int index) {
+        return this.table.getOPCode(index);
+    }
+}// end Class CountingOPTable
@@ -0,0 +1,50 @@
+package assembler;
+
+/**
+ * An error reported while assembling a line, as it is in the listing
+ * @author Michael Frederick (n00725913)
+ */
+public class Diagnostic {
+    private int address;
+    private String sourceLine;
+    private String message;
+
+    /**
+     * @param address the line's address, -1 if the error isn't about one line
+     * @param sourceLine the line, or null
+     * @param message
+     */
+    public Diagnostic(int address, String sourceLine, String message) {
+        this.address = address;
+        this.sourceLine = sourceLine;
+        this.message = message;
+    }
+
+    /**
+     * Get the value of address
+     * @return the line's address, -1 if the error isn't about one line
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Get the value of sourceLine
+     * @return the line as written in the source, or null
+     */
+    public String getSourceLine() {
+        return sourceLine;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        if (this.sourceLine == null) {
+            return this.message;
+        }
+        return String.format("%04X %s: %s", this.address, this.sourceLine.trim(), this.message);
+    }
+}// end Class Diagnostic
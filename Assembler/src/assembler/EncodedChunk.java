@@ -0,0 +1,105 @@
+package assembler;
+
+/**
+ * The pass two results for a run of consecutive intermediate lines
+ *
+ * Chunks are encoded independently (possibly on different threads) and
+ * then written out in order. Object code is kept as a number and a digit
+ * count so encoding a line doesn't allocate anything; messages and
+ * failures are rare and their arrays are only made when needed.
+ * @author Michael Frederick (n00725913)
+ */
+public class EncodedChunk {
+    private int first;
+    private int size;
+    private int baseAddress;
+    private int[] codes;
+    private byte[] digits;
+    private String[] messages;
+    private Exception[] failures;
+
+    /**
+     * @param first index of the first intermediate line in the chunk
+     * @param size number of lines in the chunk
+     * @param baseAddress the BASE value in effect at the first line, -1 for none
+     */
+    public EncodedChunk(int first, int size, int baseAddress) {
+        this.first = first;
+        this.size = size;
+        this.baseAddress = baseAddress;
+        this.codes = new int[size];
+        this.digits = new byte[size];
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getBaseAddress() {
+        return baseAddress;
+    }
+
+    /**
+     * Sets the object code of a line
+     * @param slot line within the chunk
+     * @param code
+     * @param digitCount number of hex digits, 0 for no object code
+     */
+    public void setCode(int slot, int code, int digitCount) {
+        this.codes[slot] = code;
+        this.digits[slot] = (byte) digitCount;
+    }
+
+    public int getCode(int slot) {
+        return this.codes[slot];
+    }
+
+    public int getDigits(int slot) {
+        return this.digits[slot];
+    }
+
+    /**
+     * Adds a listing message to be written before the line
+     * @param slot
+     * @param message
+     */
+    public void addMessage(int slot, String message) {
+        if (this.messages == null) {
+            this.messages = new String[this.size];
+        }
+        if (this.messages[slot] == null) {
+            this.messages[slot] = message;
+        }
+        else {
+            this.messages[slot] += System.lineSeparator() + message;
+        }
+    }
+
+    /**
+     * @param slot
+     * @return the messages for the line, one per line of text, or null
+     */
+    public String getMessages(int slot) {
+        return this.messages == null ? null : this.messages[slot];
+    }
+
+    /**
+     * Records that the line could not be encoded, pass two stops there
+     * @param slot
+     * @param failure
+     */
+    public void setFailure(int slot, Exception failure) {
+        if (this.failures == null) {
+            this.failures = new Exception[this.size];
+        }
+        this.failures[slot] = failure;
+    }
+
+    public Exception getFailure(int slot) {
+        return this.failures == null ? null : this.failures[slot];
+    }
+}// end Class EncodedChunk
@@ -0,0 +1,104 @@
+package assembler;
+
+/**
+ * An instruction the one pass assembler wrote out before it knew where
+ * its operand (or the base it is relative to) is
+ *
+ * Fix-ups waiting on the same symbol are chained together through next,
+ * and the whole chain is worked through once the symbol is defined.
+ * @author Michael Frederick (n00725913)
+ */
+public class FixUp {
+    private DataItem item;
+    private OPCode opcode;
+    private String source;
+    private int target;
+    private String baseSymbol;
+    private int baseAddress;
+    private FixUp next;
+    private HeldLine listing;
+
+    /**
+     * @param item the instruction, already given its address
+     * @param opcode
+     * @param source the source line
+     * @param baseSymbol the BASE symbol in effect if it wasn't defined yet, otherwise null
+     * @param baseAddress the BASE value in effect, -1 for none
+     */
+    public FixUp(DataItem item, OPCode opcode, String source, String baseSymbol, int baseAddress) {
+        this.item = item;
+        this.opcode = opcode;
+        this.source = source;
+        this.target = -1;
+        this.baseSymbol = baseSymbol;
+        this.baseAddress = baseAddress;
+    }
+
+    public DataItem getItem() {
+        return item;
+    }
+
+    public OPCode getOpcode() {
+        return opcode;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Get the value of target
+     * @return address of the operand, -1 until it is defined
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * Set the value of target
+     * @param target new value of target
+     */
+    public void setTarget(int target) {
+        this.target = target;
+    }
+
+    public String getBaseSymbol() {
+        return baseSymbol;
+    }
+
+    public int getBaseAddress() {
+        return baseAddress;
+    }
+
+    /**
+     * Get the value of next
+     * @return the next fix-up waiting on the same symbol, or null
+     */
+    public FixUp getNext() {
+        return next;
+    }
+
+    /**
+     * Set the value of next
+     * @param next new value of next
+     */
+    public void setNext(FixUp next) {
+        this.next = next;
+    }
+
+    /**
+     * Get the value of listing
+     * @return the instruction's listing line, held until this is resolved
+     */
+    public HeldLine getListing() {
+        return listing;
+    }
+
+    /**
+     * Set the value of listing
+     * @param listing new value of listing
+     */
+    public void setListing(HeldLine listing) {
+        this.listing = listing;
+    }
+}// end Class FixUp
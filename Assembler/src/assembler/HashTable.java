@@ -1,60 +1,72 @@
 package assembler;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
 
 /**
  * Builds and contains a DataItem table based on the input file given
+ *
+ * Open addressing over a power of two array. The table is kept at most
+ * half full; when it passes that it starts a larger array and moves the
+ * old slots across a few at a time on each insert, so no single insert
+ * pays for the whole resize. A removed label's slot holds the deleted
+ * record until the next resize, so probes carry on past it.
  * @author Michael Frederick (n00725913)
  */
-public class HashTable { 
-    
+public class HashTable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    // Old slots moved into the new array on every insert while resizing
+    private static final int MIGRATION_STEP = 4;
+
     private DataItem[] data;
-    private int size;
+    private DataItem[] oldData;
+    private int migrationIndex;
+    private int count;
+    private int oldCount;
+    private int tombstones;
     private DataItem deletedRecord;
-    
+    private ProbeStats probeStats;
+    private ProbeStats insertStats;
+
+    /**
+     * Generates a HashTable that grows as labels are inserted
+     */
+    public HashTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
     /**
      * Generates a HashTable
-     * @param size 
+     * @param size expected number of labels
      */
     public HashTable(int size) {
-        this.size = this.getNextPrime(size);
         this.deletedRecord = new DataItem("deleted");
-        this.data = new DataItem[this.size];
+        this.data = new DataItem[this.capacityFor(size)];
     }
-    
+
     /**
      * Inserts the DataItem into the array, if item with the same label does not exist
-     * @param item 
-     * @return  
+     * @param item
+     * @return
      */
     public String insertData(DataItem item) {
+        int probes;
         String error = "";
         if (!isNullOrEmpty(item.getLabel())) {
-            int insertionIndex = this.hashFunction(item.getLabel(), this.size);
-            int collisions = 0;
-            boolean searching = true;
-            
-            while (searching) {
-                if (this.data[insertionIndex] == null) {
-                    this.data[insertionIndex] = item;
-                    searching = false;
-                }
-                else if (item.equals(this.data[insertionIndex])) {
-                    error = "Duplicate Label";
-                    //searching = false;
-                    collisions++;
-                    insertionIndex = this.collisionResolver(insertionIndex, collisions);
-                }
-                else if (collisions > this.size) {
-                    // Switching to Linear Probing
-                    insertionIndex = (insertionIndex + 1) % this.size;
+            if (this.searchForData(item.getLabel()) >= 0) {
+                // Searches only ever find the first one, so don't store it
+                error = "Duplicate Label";
+            }
+            else {
+                if ((this.count + this.oldCount + this.tombstones + 1) * 2 > this.data.length) {
+                    this.startResize();
                 }
-                else {
-                    // Going to next cell
-                    collisions++;
-                    insertionIndex = this.collisionResolver(insertionIndex, collisions);
+                probes = this.place(this.data, item);
+                this.count++;
+                this.migrate(MIGRATION_STEP);
+                if (this.insertStats != null) {
+                    this.insertStats.record(probes);
                 }
             }
         }
@@ -63,118 +75,306 @@ public class HashTable {
 
     /**
      * Searches the Data array for the DataItem with the same string
-     * @param key 
-     * @return index
+     * @param key
+     * @return index, or -1 if the label is not in the table
      */
     public int searchForData(String key) {
-        int insertionIndex = this.hashFunction(key, this.size);
-        int collisions = 0;
-        boolean searching = true;
-        
-        while (searching) {
-            if (this.data[insertionIndex] == null || this.data[insertionIndex].equals(deletedRecord)) {
-                //System.out.println("ERROR: '" + key + "' not found");
-                searching = false;
-                insertionIndex = -1;
-            }
-            else if (this.data[insertionIndex].getLabel().equals(key)) {
-                //System.out.println("'" + key + "' with value: " + this.data[insertionIndex].getValue() + " found at index: " + insertionIndex);
-                searching = false;
+        int index;
+        int probes;
+        long found;
+        if (isNullOrEmpty(key)) {
+            return -1;
+        }
+        found = this.find(this.data, key);
+        index = (int) found;
+        probes = (int) (found >>> 32);
+        if (index < 0 && this.oldData != null) {
+            // Still waiting to be moved, the index points past the new array
+            found = this.find(this.oldData, key);
+            index = (int) found;
+            probes += (int) (found >>> 32);
+            if (index >= 0) {
+                index += this.data.length;
             }
-            else if (collisions > this.size) {
-                // Switching to Linear Probing
-                insertionIndex = (insertionIndex + 1) % this.size;
+        }
+        if (this.probeStats != null) {
+            this.probeStats.record(probes);
+        }
+        return index;
+    }
+
+    /**
+     * Set the value of probeStats
+     * @param probeStats where searches are counted, null to stop counting
+     */
+    public void setProbeStats(ProbeStats probeStats) {
+        this.probeStats = probeStats;
+    }
+
+    /**
+     * Set the value of insertStats
+     * @param insertStats where the slots an insert looks at to place its
+     * label are counted, null to stop counting
+     */
+    public void setInsertStats(ProbeStats insertStats) {
+        this.insertStats = insertStats;
+    }
+
+    /**
+     * Get the number of slots
+     * @return the size of the array labels are placed in
+     */
+    public int getCapacity() {
+        return this.data.length;
+    }
+
+    /**
+     * Get the number of slots in use, by a label or by a removed label's
+     * tombstone, counting labels still waiting to be moved by a resize
+     * @return int
+     */
+    public int getOccupiedSlots() {
+        return this.count + this.tombstones + this.oldCount;
+    }
+
+    /**
+     * Get the load factor, the one kept under a half by resizing
+     * @return occupied slots over capacity
+     */
+    public double getLoadFactor() {
+        return (double) this.getOccupiedSlots() / this.data.length;
+    }
+
+    /**
+     * Measures how many slots a search for each label in the table looks
+     * at, to check how well the hash spreads a set of labels
+     * @return ProbeStats with one lookup per label
+     */
+    public ProbeStats measureProbes() {
+        ProbeStats stats = new ProbeStats();
+        measureProbes(this.data, stats);
+        if (this.oldData != null) {
+            measureProbes(this.oldData, stats);
+        }
+        return stats;
+    }
+
+    private void measureProbes(DataItem[] items, ProbeStats stats) {
+        int probes;
+        long found;
+        for (DataItem item : items) {
+            if (item != null && item != this.deletedRecord) {
+                found = this.find(this.data, item.getLabel());
+                probes = (int) (found >>> 32);
+                if ((int) found < 0) {
+                    // Not moved yet, the search goes on into the old array
+                    probes += (int) (this.find(this.oldData, item.getLabel()) >>> 32);
+                }
+                stats.record(probes);
             }
-            else {
-                collisions++;
-                insertionIndex = this.collisionResolver(insertionIndex, collisions);
+        }
+    }
+
+    /**
+     * Removes the label from the table
+     * @param key
+     * @return true if the label was in the table
+     */
+    public boolean removeData(String key) {
+        int index = this.searchForData(key);
+        if (index < 0) {
+            return false;
+        }
+        if (index < this.data.length) {
+            this.data[index] = this.deletedRecord;
+            this.count--;
+            this.tombstones++;
+        }
+        else {
+            // Dropped when the old array is moved across
+            this.oldData[index - this.data.length] = this.deletedRecord;
+            this.oldCount--;
+        }
+        return true;
+    }
+
+    /**
+     * Get every label in the table
+     * @return the items, in no particular order
+     */
+    public List<DataItem> getItems() {
+        List<DataItem> items = new ArrayList<DataItem>(this.size());
+        DataItem[][] tables = {this.data, this.oldData};
+        for (DataItem[] table : tables) {
+            if (table != null) {
+                for (DataItem item : table) {
+                    if (item != null && item != this.deletedRecord) {
+                        items.add(item);
+                    }
+                }
             }
         }
-        
-        return insertionIndex;
+        return items;
     }
-    
+
     public DataItem getDeletedItem() {
         return this.deletedRecord;
     }
-    
+
     public DataItem getData(int index) {
-        if (index > 0 && index < this.data.length && this.data[index] != null) {
-            return this.data[index];
+        DataItem item = null;
+        if (index >= 0 && index < this.data.length) {
+            item = this.data[index];
+        }
+        else if (this.oldData != null && index >= this.data.length && index < this.data.length + this.oldData.length) {
+            item = this.oldData[index - this.data.length];
+        }
+
+        if (item != null) {
+            return item;
         }
         else {
             return this.deletedRecord;
         }
     }
-    
+
+    /**
+     * Get the number of labels in the table
+     * @return int
+     */
+    public int size() {
+        return this.count + this.oldCount;
+    }
+
     public void printTable() {
-        ArrayList<DataItem> list = new ArrayList<DataItem>(Arrays.asList(data));
-        Iterator iterator = list.iterator();
-        DataItem item;
-        Object temp;
-        int index;
         System.out.printf("Location\tLabel  \tAddress\t%n");
-//        SicAssembler.writeToFile(String.format("Location\tLabel  \tAddress\t"));
-        while (iterator.hasNext()) {
-            temp = iterator.next();
-            if ((temp != null ) && (temp instanceof DataItem)) {
-                index = list.indexOf(temp);
-                item = (DataItem)temp;
-                System.out.printf("%-8d\t%s\t%7s%n", index, item.getLabel(), Integer.toHexString(item.getAddress()));
-//                SicAssembler.writeToFile(String.format("%-8d\t%s\t%7s", index, item.getLabel(), Integer.toHexString(item.getAddress())));
+        printItems(this.data, 0);
+        if (this.oldData != null) {
+            printItems(this.oldData, this.data.length);
+        }
+    }
+
+    private void printItems(DataItem[] items, int offset) {
+        for (int index = 0; index < items.length; index++) {
+            if (items[index] != null && items[index] != this.deletedRecord) {
+                System.out.printf("%-8d\t%s\t%7s%n", index + offset, items[index].getLabel(), Integer.toHexString(items[index].getAddress()));
             }
         }
     }
-    
+
     /**
-     * Hashes the string by each character value and Horner's Polynomial
-     * @param str
-     * @param maxSize
-     * @return int Index
-     */
-    private int hashFunction(String str, int maxSize) {
-        int value;
-        char[] charArray = str.toCharArray();
-        int temp;
-        value = charArray[0];
-        for (int i = 1; i < charArray.length; i++) {
-            temp = charArray[i];
-            value = (value * 26 + temp) % maxSize;
+     * Probes the array for the label
+     * @param table
+     * @param key
+     * @return the number of slots looked at in the high 32 bits, the
+     * index in table (or -1) in the low 32 bits
+     */
+    private long find(DataItem[] table, String key) {
+        int mask = table.length - 1;
+        int index = hashFunction(key) & mask;
+        int probe;
+        // Triangular steps visit every slot of a power of two array once
+        for (probe = 1; probe <= table.length; probe++) {
+            if (table[index] == null) {
+                return ((long) probe << 32) | 0xFFFFFFFFL;
+            }
+            else if (table[index] != this.deletedRecord && key.equals(table[index].getLabel())) {
+                return ((long) probe << 32) | index;
+            }
+            index = (index + probe) & mask;
         }
-        return value;
+        return ((long) table.length << 32) | 0xFFFFFFFFL;
     }
-    
+
     /**
-     * How I resolve a data collision
-     * @param index
-     * @param collisions
-     * @return int Next Index to be checked
+     * Puts the item in the first empty slot on its probe sequence
+     * @param table
+     * @param item
+     * @return the number of slots looked at
      */
-    private int collisionResolver(int index, int collisions) {
-        return ((index * index) + collisions) % this.size;
-    }
-    
-    
-    // Method from pg. 541 of Data Structures and Algorithms in Java by Robert Lafore
-    private int getNextPrime(int min){
-        for(int i = min + 1; i < Integer.MAX_VALUE - 1; i++){
-            if(isPrime(i) && (i / 2) > min){
-                return i;
+    private int place(DataItem[] table, DataItem item) {
+        int mask = table.length - 1;
+        int index = hashFunction(item.getLabel()) & mask;
+        for (int probe = 1; probe <= table.length; probe++) {
+            if (table[index] == null) {
+                table[index] = item;
+                return probe;
             }
+            index = (index + probe) & mask;
         }
-        return -1;
+        throw new IllegalStateException("HashTable is full");
     }
-    
-    // Method from pg. 541 of Data Structures and Algorithms in Java by Robert Lafore
-    private boolean isPrime(int p){
-        for(int i = 2; (i * i) <= p; i++){
-            if( (p % i) == 0){
-                return false;
+
+    /**
+     * Starts a new array, the old one is drained by migrate(). It is
+     * twice the size unless removed labels made up the load.
+     */
+    private void startResize() {
+        // Finish any resize that is still running first
+        this.migrate(Integer.MAX_VALUE);
+        this.oldData = this.data;
+        this.oldCount = this.count;
+        this.migrationIndex = 0;
+        this.data = new DataItem[this.capacityFor(this.count + 1)];
+        this.count = 0;
+        this.tombstones = 0;
+    }
+
+    /**
+     * Moves up to steps slots of the old array into the new one
+     * @param steps
+     */
+    private void migrate(int steps) {
+        if (this.oldData == null) {
+            return;
+        }
+        while (steps > 0 && this.migrationIndex < this.oldData.length) {
+            DataItem item = this.oldData[this.migrationIndex];
+            if (item != null && item != this.deletedRecord) {
+                this.place(this.data, item);
+                // Leave a tombstone so the old copy can't be found once
+                // the label is removed from the new array
+                this.oldData[this.migrationIndex] = this.deletedRecord;
+                this.count++;
+                this.oldCount--;
             }
+            this.migrationIndex++;
+            steps--;
         }
-        return true;
+        if (this.migrationIndex >= this.oldData.length) {
+            this.oldData = null;
+        }
+    }
+
+    /**
+     * Spreads String's hash code so every bit affects the low bits
+     * used as the index (the finalizer from MurmurHash3)
+     * @param str
+     * @return int hash
+     */
+    private static int hashFunction(String str) {
+        int value = str.hashCode();
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
     }
-    
+
+    /**
+     * Smallest power of two that holds size labels at half load
+     * @param size
+     * @return int capacity
+     */
+    private int capacityFor(int size) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < size * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
     private boolean isNullOrEmpty(String str) {
         boolean a = false;
         if ("".equals(str) || str == null) {
@@ -183,4 +383,4 @@ public class HashTable {
         return a;
     }
 
-}//end Class HashTable
\ No newline at end of file
+}//end Class HashTable
@@ -0,0 +1,102 @@
+package assembler;
+
+/**
+ * A listing line the one pass assembler is holding back, because it or a
+ * line before it has a FixUp that hasn't been worked out yet
+ *
+ * Once the fix-up is resolved its code and any messages are filled in,
+ * and the line can be written the same as pass two would have.
+ * @author Michael Frederick (n00725913)
+ */
+public class HeldLine {
+    private String text;
+    private IntermediateLine line;
+    private int code;
+    private int digits;
+    private String messages;
+    private boolean waiting;
+
+    /**
+     * For a line that is written as it is, like a comment
+     * @param text
+     */
+    public HeldLine(String text) {
+        this.text = text;
+    }
+
+    /**
+     * For a line of the program
+     * @param line
+     * @param code
+     * @param digits number of hex digits in code, 0 for none
+     * @param messages from encoding the line, or null
+     */
+    public HeldLine(IntermediateLine line, int code, int digits, String messages) {
+        this.line = line;
+        this.code = code;
+        this.digits = digits;
+        this.messages = messages;
+    }
+
+    /**
+     * Get the value of text
+     * @return the line to write as it is, null for a line of the program
+     */
+    public String getText() {
+        return text;
+    }
+
+    public IntermediateLine getLine() {
+        return line;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    /**
+     * Fills in the code once the fix-up has been worked out
+     * @param code
+     * @param digits
+     */
+    public void setCode(int code, int digits) {
+        this.code = code;
+        this.digits = digits;
+    }
+
+    /**
+     * Get the value of messages
+     * @return the messages written in front of the line, or null
+     */
+    public String getMessages() {
+        return messages;
+    }
+
+    /**
+     * Adds messages to be written in front of the line
+     * @param messages
+     */
+    public void addMessages(String messages) {
+        this.messages = (this.messages == null) ? messages : this.messages + System.lineSeparator() + messages;
+    }
+
+    /**
+     * Get the value of waiting
+     * @return true while the line's fix-up hasn't been worked out
+     */
+    public boolean isWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Set the value of waiting
+     * @param waiting new value of waiting
+     */
+    public void setWaiting(boolean waiting) {
+        this.waiting = waiting;
+    }
+}// end Class HeldLine
@@ -0,0 +1,59 @@
+package assembler;
+
+/**
+ * Writes numbers as fixed width hex straight into a caller's buffer
+ *
+ * Digits come from a lookup table and the value is masked to the width,
+ * so a negative displacement comes out as its two's complement without
+ * any substring work and nothing is allocated per call.
+ * @author Michael Frederick (n00725913)
+ */
+public final class HexEncoder {
+
+    private static final char[] LOWER = "0123456789abcdef".toCharArray();
+    private static final char[] UPPER = "0123456789ABCDEF".toCharArray();
+
+    private HexEncoder() {
+    }
+
+    /**
+     * Appends exactly digits lowercase hex digits of value, zero padded
+     * and masked to the width
+     * @param out
+     * @param value
+     * @param digits 1 to 8
+     */
+    public static void append(StringBuilder out, int value, int digits) {
+        appendDigits(out, value, digits, LOWER);
+    }
+
+    /**
+     * Appends the uppercase hex of value without leading zeros, right
+     * aligned in a field of width characters like "%6X"
+     * @param out
+     * @param value
+     * @param width
+     */
+    public static void appendRight(StringBuilder out, int value, int width) {
+        int digits = length(value);
+        for (int i = digits; i < width; i++) {
+            out.append(' ');
+        }
+        appendDigits(out, value, digits, UPPER);
+    }
+
+    /**
+     * Number of hex digits Integer.toHexString would give for value
+     * @param value
+     * @return 1 to 8
+     */
+    public static int length(int value) {
+        return Math.max(1, (32 - Integer.numberOfLeadingZeros(value) + 3) / 4);
+    }
+
+    private static void appendDigits(StringBuilder out, int value, int digits, char[] table) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(table[(value >>> shift) & 0xF]);
+        }
+    }
+}// end Class HexEncoder
@@ -0,0 +1,54 @@
+package assembler;
+
+/**
+ * Assembles source text in memory, for embedding the assembler
+ *
+ * Built once with its opcode table and options and then shared: every
+ * call to assemble() runs on its own SicAssembler, and the opcode table
+ * is only read from, so any number of threads can use one of these at
+ * once. Nothing is read from or written to disk and nothing is printed;
+ * the object program, listing, symbols and errors come back in an
+ * AssemblyResult. The cache, --watch and the stats report don't apply.
+ * @author Michael Frederick (n00725913)
+ */
+public class InMemoryAssembler {
+
+    private OPTable opcodes;
+    private AssemblerOptions options;
+
+    /**
+     * Uses the built in opcode table and the default options
+     */
+    public InMemoryAssembler() {
+        this(OPCodeDictionary.INSTANCE, new AssemblerOptions());
+    }
+
+    /**
+     * @param opcodes the table every source is assembled against
+     * @param options only the options that change the output, and
+     * --sequential, --one-pass and --stats, are used
+     */
+    public InMemoryAssembler(OPTable opcodes, AssemblerOptions options) {
+        this.opcodes = opcodes;
+        this.options = options;
+    }
+
+    /**
+     * Assembles the source
+     * @param source the program text
+     * @return AssemblyResult
+     */
+    public AssemblyResult assemble(String source) {
+        return this.assemble("source", source);
+    }
+
+    /**
+     * Assembles the source
+     * @param name what the source is called, used in the result
+     * @param source the program text
+     * @return AssemblyResult
+     */
+    public AssemblyResult assemble(String name, String source) {
+        return new SicAssembler(name, source, this.opcodes, this.options).assembleInMemory();
+    }
+}// end Class InMemoryAssembler
@@ -0,0 +1,78 @@
+package assembler;
+
+/**
+ * One line of the program as pass one left it for pass two
+ * @author Michael Frederick (n00725913)
+ */
+public class IntermediateLine {
+    private int address;
+    private String sourceLine;
+    private DataItem item;
+    private boolean addressed;
+
+    /**
+     * For comment and error lines, which are carried over as-is
+     * @param text
+     */
+    public IntermediateLine(String text) {
+        this.sourceLine = text;
+        this.addressed = false;
+    }
+
+    /**
+     * For source lines that were given an address
+     * @param address
+     * @param sourceLine
+     * @param item the parsed line, null if the line was not parsed
+     */
+    public IntermediateLine(int address, String sourceLine, DataItem item) {
+        this.address = address;
+        this.sourceLine = sourceLine;
+        this.item = item;
+        this.addressed = true;
+    }
+
+    /**
+     * Get the value of address
+     * @return the value of address
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Get the value of sourceLine
+     * @return the value of sourceLine
+     */
+    public String getSourceLine() {
+        return sourceLine;
+    }
+
+    /**
+     * Get the value of item
+     * @return the value of item
+     */
+    public DataItem getItem() {
+        return item;
+    }
+
+    /**
+     * True for lines that pass two only copies into the listing
+     * @return boolean
+     */
+    public boolean isComment() {
+        return !addressed;
+    }
+
+    /**
+     * The line as it appears in the intermediate file
+     * @return String
+     */
+    @Override
+    public String toString() {
+        if (addressed) {
+            return String.format("%6s %s", Integer.toHexString(address).toUpperCase(), sourceLine);
+        }
+        return sourceLine;
+    }
+}// end Class IntermediateLine
@@ -0,0 +1,171 @@
+package assembler;
+
+/**
+ * Splits a fixed column program line into its fields in one pass
+ *
+ * Tokens are separated by whitespace and belong to the field whose
+ * column range they start in. Only offsets are recorded while scanning,
+ * a field is turned into a String when it is asked for. One lexer is
+ * reused line after line, so it is not safe to share between threads.
+ * @author Michael Frederick (n00725913)
+ */
+public class LineLexer {
+
+    public static final int LABEL = 0;
+    public static final int MNEMONIC = 1;
+    public static final int OPERAND = 2;
+    public static final int COMMENT = 3;
+
+    private static final int FIELDS = 4;
+
+    // Start column of each field
+    private int[] columns;
+    private int[] starts = new int[FIELDS];
+    private int[] ends = new int[FIELDS];
+    private CharSequence line;
+
+    /**
+     * @param columns start column of the label, mnemonic, operand and
+     * comment fields
+     */
+    private LineLexer(int... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Columns of a source line: label 0-6, mnemonic 7-15, operand 16-26
+     * and comments from 27 on
+     * @return LineLexer
+     */
+    public static LineLexer forSource() {
+        return new LineLexer(0, 7, 16, 27);
+    }
+
+    /**
+     * Walks the line once and records where each field starts and ends.
+     * The first token in a field wins; comments run to the end of the line.
+     * @param line
+     */
+    public void scan(CharSequence line) {
+        int length = line.length();
+        int index = 0;
+        int start;
+        int field;
+        this.line = line;
+        for (field = 0; field < FIELDS; field++) {
+            this.starts[field] = -1;
+            this.ends[field] = -1;
+        }
+
+        while (index < length) {
+            while (index < length && isWhitespace(line.charAt(index))) {
+                index++;
+            }
+            if (index >= length) {
+                break;
+            }
+            start = index;
+            while (index < length && !isWhitespace(line.charAt(index))) {
+                index++;
+            }
+            field = this.fieldAt(start);
+            if (field == COMMENT) {
+                this.starts[COMMENT] = start;
+                this.ends[COMMENT] = trimmedEnd(line, length);
+                break;
+            }
+            else if (this.starts[field] < 0) {
+                this.starts[field] = start;
+                this.ends[field] = index;
+            }
+        }
+    }
+
+    /**
+     * @param field
+     * @return true if the last line scanned had a token in the field
+     */
+    public boolean has(int field) {
+        return this.starts[field] >= 0;
+    }
+
+    /**
+     * @param field
+     * @return the column the field starts in, or -1
+     */
+    public int start(int field) {
+        return this.starts[field];
+    }
+
+    /**
+     * @param field
+     * @return the column just past the end of the field, or -1
+     */
+    public int end(int field) {
+        return this.ends[field];
+    }
+
+    /**
+     * @param field
+     * @return the first character of the field, or ' ' if it is empty
+     */
+    public char first(int field) {
+        return this.has(field) ? this.line.charAt(this.starts[field]) : ' ';
+    }
+
+    /**
+     * @param field
+     * @return the text of the field, or null if it is empty
+     */
+    public String get(int field) {
+        if (!this.has(field)) {
+            return null;
+        }
+        return this.line.subSequence(this.starts[field], this.ends[field]).toString();
+    }
+
+    /**
+     * Gets part of the last line scanned
+     * @param start
+     * @param end
+     * @return String
+     */
+    public String slice(int start, int end) {
+        return this.line.subSequence(start, end).toString();
+    }
+
+    /**
+     * Finds a character inside a field
+     * @param field
+     * @param c
+     * @return the column of c, or -1 if the field doesn't contain it
+     */
+    public int indexOf(int field, char c) {
+        for (int i = this.starts[field]; i >= 0 && i < this.ends[field]; i++) {
+            if (this.line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int fieldAt(int column) {
+        int field = FIELDS - 1;
+        while (field > 0 && column < this.columns[field]) {
+            field--;
+        }
+        return field;
+    }
+
+    private static int trimmedEnd(CharSequence line, int length) {
+        while (length > 0 && isWhitespace(line.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
+
+    // The same delimiters StringTokenizer uses by default
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}// end Class LineLexer
@@ -0,0 +1,220 @@
+package assembler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a text file a line at a time straight from its bytes
+ *
+ * Assembler sources are plain ASCII, so a line is split out by looking
+ * for '\n', '\r' or "\r\n" and is only decoded when a String is asked for
+ * (lines with bytes over 0x7F go through the platform charset, the same
+ * as Scanner). The file is read through a FileChannel into one reused
+ * buffer, or memory mapped a window at a time for big files. The current
+ * line is a reused CharSequence that is overwritten by the next call to
+ * next(). It can also read from a byte array or any InputStream, such as
+ * standard input. Not thread safe.
+ * @author Michael Frederick (n00725913)
+ */
+public class LineReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // How much of the file is mapped at once
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private ReadableByteChannel channel;
+    private boolean mapped;
+    private ByteBuffer buffer;
+    private long position;
+    private long size;
+    private long bytesRead;
+    private boolean skipLineFeed;
+    private byte[] line = new byte[256];
+    private int length;
+    private boolean ascii;
+    private Slice slice = new Slice();
+
+    /**
+     * Opens the file for reading
+     * @param file
+     * @param bufferSize size of the read buffer in bytes, unused when mapped
+     * @param mapped true to memory map the file instead of reading it
+     * @throws IOException
+     */
+    public LineReader(File file, int bufferSize, boolean mapped) throws IOException {
+        FileChannel fileChannel = new FileInputStream(file).getChannel();
+        this.channel = fileChannel;
+        this.mapped = mapped;
+        this.size = fileChannel.size();
+        this.position = 0;
+        if (mapped) {
+            this.buffer = ByteBuffer.allocate(0);
+        }
+        else {
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.buffer.flip();
+        }
+    }
+
+    /**
+     * Reads from a stream, which is closed along with the reader
+     * @param in
+     * @param bufferSize size of the read buffer in bytes
+     */
+    public LineReader(InputStream in, int bufferSize) {
+        this.channel = Channels.newChannel(in);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads lines out of bytes already in memory
+     * @param bytes the text, as it would be in a file
+     */
+    public LineReader(byte[] bytes) {
+        this.buffer = ByteBuffer.wrap(bytes);
+        this.size = bytes.length;
+        this.position = this.size;
+        this.bytesRead = this.size;
+    }
+
+    /**
+     * Moves on to the next line
+     * @return false at the end of the file
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        byte b;
+        boolean started = false;
+        this.length = 0;
+        this.ascii = true;
+        while (this.buffer.hasRemaining() || this.fill()) {
+            b = this.buffer.get();
+            if (this.skipLineFeed) {
+                // Second half of a "\r\n"
+                this.skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            started = true;
+            if (b == '\n') {
+                return true;
+            }
+            else if (b == '\r') {
+                this.skipLineFeed = true;
+                return true;
+            }
+            if (this.length == this.line.length) {
+                byte[] bigger = new byte[this.line.length * 2];
+                System.arraycopy(this.line, 0, bigger, 0, this.length);
+                this.line = bigger;
+            }
+            this.line[this.length++] = b;
+            this.ascii &= b >= 0;
+        }
+        return started;
+    }
+
+    /**
+     * Get the current line, without its line terminator. Every byte is
+     * one char, decode it with lineString() if it might not be ASCII
+     * @return the current line, reused by the next call to next()
+     */
+    public CharSequence line() {
+        return this.slice;
+    }
+
+    /**
+     * Get the current line as a String
+     * @return the current line
+     */
+    public String lineString() {
+        if (this.ascii) {
+            return new String(this.line, 0, this.length, StandardCharsets.ISO_8859_1);
+        }
+        return new String(this.line, 0, this.length, Charset.defaultCharset());
+    }
+
+    /**
+     * Refills the buffer (or maps the next window of the file)
+     * @return false when there is nothing left to read
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (this.channel == null) {
+            // Reading from memory, it was all there to begin with
+            return false;
+        }
+        if (this.mapped) {
+            if (this.position >= this.size) {
+                return false;
+            }
+            long window = Math.min(MAP_WINDOW, this.size - this.position);
+            this.buffer = ((FileChannel) this.channel).map(FileChannel.MapMode.READ_ONLY, this.position, window);
+            this.position += window;
+            this.bytesRead += window;
+            return true;
+        }
+        this.buffer.clear();
+        int count = this.channel.read(this.buffer);
+        this.buffer.flip();
+        if (count > 0) {
+            this.bytesRead += count;
+        }
+        return count > 0;
+    }
+
+    /**
+     * Get the value of bytesRead
+     * @return how much of the file has been read (or mapped) so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * The current line seen as chars
+     */
+    private class Slice implements CharSequence {
+
+        @Override
+        public int length() {
+            return LineReader.this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= LineReader.this.length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + LineReader.this.length);
+            }
+            return (char) (LineReader.this.line[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(LineReader.this.line, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return LineReader.this.lineString();
+        }
+    }
+}// end Class LineReader
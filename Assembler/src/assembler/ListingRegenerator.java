@@ -0,0 +1,44 @@
+package assembler;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Makes the listing of a program assembled with --no-listing, from the
+ * source and the .lsx table written next to its .obj
+ *
+ *     ListingRegenerator SOURCE [TABLE [LISTING]]
+ *
+ * TABLE and LISTING default to the source's base name with .lsx and .lst
+ * in the working directory, where the assembler would have put them. The
+ * listing comes out the same as if it had been written at the time.
+ * @author Michael Frederick (n00725913)
+ */
+public class ListingRegenerator {
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        File source;
+        File table;
+        File listing;
+        String baseName;
+
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: ListingRegenerator SOURCE [TABLE [LISTING]]");
+            System.exit(1);
+        }
+        source = new File(args[0]);
+        baseName = SicAssembler.getBaseName(source);
+        table = new File((args.length > 1) ? args[1] : baseName + ListingTable.EXTENSION);
+        listing = new File((args.length > 2) ? args[2] : baseName + ".lst");
+        try {
+            ListingTable.regenerate(source, table, listing);
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}// end Class ListingRegenerator
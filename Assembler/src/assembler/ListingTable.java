@@ -0,0 +1,348 @@
+package assembler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the listing as a side table that only keeps what isn't in the
+ * source, for --no-listing; regenerate() puts the listing back together
+ * from the table and the source
+ *
+ * Listing lines come in through println() like they would go to the .lst
+ * file. Most of them are an object code and address prefix followed by
+ * the next line of the source, so all the table keeps of those is the
+ * code and the address.
+ * Every table line stands for one listing line:
+ *
+ *     +CODE ADDRESS   the usual prefix, then the next source line
+ *     *PREFIX         any other prefix, then the next source line
+ *     "TEXT           a line that isn't from the source, like an error
+ *
+ * Blank source lines are skipped over, the assembler never lists them.
+ * The first line of the table holds the CRC-32 and length of the source,
+ * so a listing isn't made from a source that has changed since.
+ * @author Michael Frederick (n00725913)
+ */
+public class ListingTable extends OutputChannel {
+
+    public static final String EXTENSION = ".lsx";
+    private static final String MAGIC = "LSX1";
+
+    private Writer out;
+    private LineReader source;
+    // The next source line to be listed, null once there are none
+    private CharSequence pending;
+    private StringBuilder row = new StringBuilder(32);
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * @param filename the table's name
+     * @param out where the table is written, closed along with this
+     * @param sourceFile the source being assembled, read alongside it
+     * @param bufferSize size of the read buffer for the source
+     * @throws IOException
+     */
+    public ListingTable(String filename, Writer out, File sourceFile, int bufferSize) throws IOException {
+        super(filename, out);
+        this.out = out;
+        this.write(header(sourceFile));
+        this.write("\n");
+        this.source = new LineReader(sourceFile, bufferSize, false);
+        this.pending = nextSourceLine(this.source);
+    }
+
+    /**
+     * Takes a listing line, or several from a message, in place of
+     * writing them to the .lst file
+     * @param message
+     * @throws IOException
+     */
+    @Override
+    public void println(CharSequence message) throws IOException {
+        int start = 0;
+        String separator = System.lineSeparator();
+        if (this.pending == null || !endsWith(message, this.pending)
+                || hasLineBreak(message, message.length() - this.pending.length())) {
+            // Error messages can run to several lines
+            String text = message.toString();
+            for (int end = text.indexOf(separator); end >= 0; end = text.indexOf(separator, start)) {
+                this.record(text.subSequence(start, end));
+                start = end + separator.length();
+            }
+            this.record(text.subSequence(start, text.length()));
+        }
+        else {
+            this.record(message);
+        }
+    }
+
+    /**
+     * Takes a listing line from its parts, quicker than println() for the
+     * usual line
+     * @param code the object code, may be empty
+     * @param address -1 when the line has none
+     * @param sourceLine
+     * @return false if it has to go through println() after all
+     * @throws IOException
+     */
+    public boolean println(CharSequence code, int address, String sourceLine) throws IOException {
+        if (this.pending == null || !contentEquals(this.pending, sourceLine)) {
+            return false;
+        }
+        this.row.setLength(0);
+        this.row.append('+').append(code).append(' ');
+        if (address >= 0) {
+            HexEncoder.appendRight(this.row, address, 0);
+        }
+        this.row.append('\n');
+        this.write(this.row);
+        this.pending = nextSourceLine(this.source);
+        return true;
+    }
+
+    /**
+     * Writes the table line for one listing line
+     * @param text the listing line, without its line separator
+     * @throws IOException
+     */
+    private void record(CharSequence text) throws IOException {
+        int length;
+        int codeEnd;
+        int addressStart;
+        int addressEnd;
+        if (this.pending == null || !endsWith(text, this.pending)) {
+            this.write("\"");
+            this.write(text);
+            this.write("\n");
+            return;
+        }
+        // The prefix is the code, spaces, maybe an address, then a space
+        length = text.length() - this.pending.length();
+        codeEnd = 0;
+        while (codeEnd < length && text.charAt(codeEnd) != ' ') {
+            codeEnd++;
+        }
+        addressStart = codeEnd;
+        while (addressStart < length && text.charAt(addressStart) == ' ') {
+            addressStart++;
+        }
+        addressEnd = addressStart;
+        while (addressEnd < length && text.charAt(addressEnd) != ' ') {
+            addressEnd++;
+        }
+        if (isPrefix(length, codeEnd, addressStart, addressEnd)) {
+            this.write("+");
+            this.write(text.subSequence(0, codeEnd));
+            this.write(" ");
+            this.write(text.subSequence(addressStart, addressEnd));
+        }
+        else {
+            this.write("*");
+            this.write(text.subSequence(0, length));
+        }
+        this.write("\n");
+        this.pending = nextSourceLine(this.source);
+    }
+
+    private void write(CharSequence text) throws IOException {
+        this.out.append(text);
+        this.bytesWritten += text.length();
+    }
+
+    private static boolean contentEquals(CharSequence a, String b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < b.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasLineBreak(CharSequence text, int length) {
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n' || text.charAt(i) == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether appendPrefix() would make exactly this prefix out of the
+     * code and address found in it
+     */
+    private static boolean isPrefix(int length, int codeEnd, int addressStart, int addressEnd) {
+        int addressColumn = Math.max(codeEnd, 8) + 1;
+        int addressLength = addressEnd - addressStart;
+        if (addressLength == 0) {
+            return length == addressColumn;
+        }
+        return addressStart == addressColumn + Math.max(0, 6 - addressLength) && length == addressEnd + 1;
+    }
+
+    /**
+     * Get the value of bytesWritten
+     * @return the size of the table so far
+     */
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.source.close();
+        }
+        finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Makes the listing again from the source and its table
+     * @param sourceFile
+     * @param tableFile
+     * @param listing where the listing is written, not closed
+     * @throws IOException if the source has changed since the table was
+     * written, or the table is damaged
+     */
+    public static void regenerate(File sourceFile, File tableFile, Writer listing) throws IOException {
+        String text;
+        StringBuilder buffer = new StringBuilder(128);
+        int space;
+        LineReader table = new LineReader(tableFile, LineReader.DEFAULT_BUFFER_SIZE, false);
+        LineReader source = null;
+        try {
+            if (!table.next() || !table.lineString().equals(header(sourceFile))) {
+                throw new IOException(tableFile + " is not the listing table of " + sourceFile + " as it is now");
+            }
+            source = new LineReader(sourceFile, LineReader.DEFAULT_BUFFER_SIZE, false);
+            while (table.next()) {
+                text = table.lineString();
+                buffer.setLength(0);
+                if (text.startsWith("\"")) {
+                    buffer.append(text, 1, text.length());
+                }
+                else {
+                    if (nextSourceLine(source) == null) {
+                        throw new IOException(tableFile + " has more lines than " + sourceFile);
+                    }
+                    if (text.startsWith("+") && (space = text.indexOf(' ')) > 0) {
+                        appendPrefix(buffer, text.substring(1, space), text.substring(space + 1));
+                    }
+                    else if (text.startsWith("*")) {
+                        buffer.append(text, 1, text.length());
+                    }
+                    else {
+                        throw new IOException(tableFile + " is damaged: " + text);
+                    }
+                    buffer.append(source.lineString());
+                }
+                listing.append(buffer).append(System.lineSeparator());
+            }
+        }
+        finally {
+            table.close();
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Regenerates the listing into a file
+     * @param sourceFile
+     * @param tableFile
+     * @param listingFile
+     * @throws IOException
+     */
+    public static void regenerate(File sourceFile, File tableFile, File listingFile) throws IOException {
+        Writer listing = new BufferedWriter(new FileWriter(listingFile), OutputChannel.DEFAULT_BUFFER_SIZE);
+        try {
+            regenerate(sourceFile, tableFile, listing);
+        }
+        finally {
+            listing.close();
+        }
+    }
+
+    /**
+     * A listing line's prefix the way SicAssembler writes it: the object
+     * code padded to 8 columns, a space, then the address in 6 and a space
+     */
+    private static void appendPrefix(StringBuilder out, String code, String address) {
+        out.append(code);
+        while (out.length() < 8) {
+            out.append(' ');
+        }
+        out.append(' ');
+        if (!address.isEmpty()) {
+            for (int i = address.length(); i < 6; i++) {
+                out.append(' ');
+            }
+            out.append(address).append(' ');
+        }
+    }
+
+    /**
+     * The next source line the assembler would list
+     * @return the reader's line, good until it moves on; null at the end
+     * of the source
+     */
+    private static CharSequence nextSourceLine(LineReader source) throws IOException {
+        while (source.next()) {
+            if (source.line().length() > 0) {
+                return source.line();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The table's first line for the source as it is now
+     */
+    private static String header(File sourceFile) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[LineReader.DEFAULT_BUFFER_SIZE];
+        long length = 0;
+        InputStream in = new FileInputStream(sourceFile);
+        try {
+            for (int count = in.read(buffer); count > 0; count = in.read(buffer)) {
+                crc.update(buffer, 0, count);
+                length += count;
+            }
+        }
+        finally {
+            in.close();
+        }
+        return String.format("%s %08X %d", MAGIC, crc.getValue(), length);
+    }
+
+    private static boolean endsWith(CharSequence text, CharSequence end) {
+        int offset = text.length() - end.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < end.length(); i++) {
+            if (text.charAt(offset + i) != end.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}// end Class ListingTable
@@ -15,12 +15,44 @@ public class OPCode {
     private String opcode;
     private int format;
     private String unknown;
+    // Decoded once here so pass two never has to parse the strings
+    private int opcodeValue;
+    private int registerNumber;
+    private boolean sicOnly;
 
     public OPCode(String label, String opcode, int format, String unknown) {
         this.label = label;
         this.opcode = opcode;
         this.format = format;
         this.unknown = unknown;
+        this.opcodeValue = Integer.parseInt(opcode, 16);
+        // Register symbols are listed with just a number and no format
+        this.registerNumber = (format == -1) ? this.opcodeValue : -1;
+        this.sicOnly = !label.isEmpty() && label.charAt(0) == '*';
+    }
+
+    /**
+     * Get the value of opcodeValue
+     * @return the opcode as a number
+     */
+    public int getOpcodeValue() {
+        return opcodeValue;
+    }
+
+    /**
+     * Get the value of registerNumber
+     * @return the register number, or -1 if this is not a register
+     */
+    public int getRegisterNumber() {
+        return registerNumber;
+    }
+
+    /**
+     * Get the value of sicOnly
+     * @return true for the '*' entries, plain SIC instructions without n and i bits
+     */
+    public boolean isSicOnly() {
+        return sicOnly;
     }
 
     /**
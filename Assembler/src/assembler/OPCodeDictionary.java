@@ -0,0 +1,195 @@
+// Generated by OPCodeDictionaryGenerator from SICOPS.txt, do not edit.
+// Run "ant generate-opcodes" after changing the opcode list.
+package assembler;
+
+/**
+ * The default opcode table, a minimal perfect hash over the SICOPS.txt
+ * entries so a lookup is one hash and one compare
+ */
+public final class OPCodeDictionary implements OPTable {
+
+    public static final OPCodeDictionary INSTANCE = new OPCodeDictionary();
+
+    private static final int SIZE = 136;
+
+    private static final OPCode[] CODES = {
+        new OPCode("+JSUB", "48", 4, "0"),
+        new OPCode("+RD", "D8", 4, "1"),
+        new OPCode("+ADDF", "58", 4, "0"),
+        new OPCode("*JEQ", "30", 3, "0"),
+        new OPCode("SVC", "B0", 2, "0"),
+        new OPCode("LDCH", "50", 3, "1"),
+        new OPCode("+DIVF", "64", 4, "0"),
+        new OPCode("+STL", "14", 4, "0"),
+        new OPCode("SUB", "1C", 3, "3"),
+        new OPCode("MUL", "20", 3, "3"),
+        new OPCode("MULR", "98", 2, "0"),
+        new OPCode("DIVR", "9C", 2, "0"),
+        new OPCode("+ADD", "18", 4, "3"),
+        new OPCode("COMPF", "88", 3, "0"),
+        new OPCode("FLOAT", "C0", 1, "0"),
+        new OPCode("+LDT", "74", 4, "3"),
+        new OPCode("+J", "3C", 4, "0"),
+        new OPCode("*LDCH", "50", 3, "1"),
+        new OPCode("WD", "DC", 3, "1"),
+        new OPCode("NORM", "C8", 1, "0"),
+        new OPCode("*LDL", "08", 3, "3"),
+        new OPCode("*LDA", "00", 3, "3"),
+        new OPCode("CLEAR", "B4", 2, "0"),
+        new OPCode("SIO", "F0", 1, "0"),
+        new OPCode("COMPR", "A0", 2, "0"),
+        new OPCode("+LDS", "6C", 4, "3"),
+        new OPCode("HIO", "F4", 1, "0"),
+        new OPCode("+STSW", "E8", 4, "0"),
+        new OPCode("*AND", "40", 3, "3"),
+        new OPCode("SHIFTR", "A8", 2, "0"),
+        new OPCode("SHIFTL", "A4", 2, "0"),
+        new OPCode("JSUB", "48", 3, "0"),
+        new OPCode("A", "0", -1, null),
+        new OPCode("+SUBF", "5C", 4, "0"),
+        new OPCode("LDB", "68", 3, "3"),
+        new OPCode("SUBR", "94", 2, "0"),
+        new OPCode("TIX", "2C", 3, "0"),
+        new OPCode("*MUL", "20", 3, "3"),
+        new OPCode("+STT", "84", 4, "0"),
+        new OPCode("+LDL", "08", 4, "3"),
+        new OPCode("STS", "7C", 3, "0"),
+        new OPCode("*OR", "44", 3, "3"),
+        new OPCode("+COMP", "28", 4, "3"),
+        new OPCode("+LPS", "D0", 4, "0"),
+        new OPCode("STL", "14", 3, "0"),
+        new OPCode("*STL", "14", 3, "0"),
+        new OPCode("+DIV", "24", 4, "3"),
+        new OPCode("RD", "D8", 3, "1"),
+        new OPCode("TD", "E0", 3, "1"),
+        new OPCode("PC", "8", -1, null),
+        new OPCode("ADDR", "90", 2, "0"),
+        new OPCode("COMP", "28", 3, "3"),
+        new OPCode("*JLT", "38", 3, "0"),
+        new OPCode("LDA", "00", 3, "3"),
+        new OPCode("+COMPF", "88", 4, "0"),
+        new OPCode("+STCH", "54", 4, "0"),
+        new OPCode("X", "1", -1, null),
+        new OPCode("*TIX", "2C", 3, "0"),
+        new OPCode("+STA", "0C", 4, "0"),
+        new OPCode("+WD", "DC", 4, "1"),
+        new OPCode("MULF", "60", 3, "0"),
+        new OPCode("S", "4", -1, null),
+        new OPCode("L", "2", -1, null),
+        new OPCode("*J", "3C", 3, "0"),
+        new OPCode("*STA", "0C", 3, "0"),
+        new OPCode("JGT", "34", 3, "0"),
+        new OPCode("+MULF", "60", 4, "0"),
+        new OPCode("*ADD", "18", 3, "3"),
+        new OPCode("LDX", "04", 3, "3"),
+        new OPCode("+JGT", "34", 4, "0"),
+        new OPCode("+OR", "44", 4, "3"),
+        new OPCode("LDF", "70", 3, "0"),
+        new OPCode("*RD", "D8", 3, "1"),
+        new OPCode("*STSW", "E8", 3, "0"),
+        new OPCode("SW", "9", -1, null),
+        new OPCode("+JLT", "38", 4, "0"),
+        new OPCode("+STS", "7C", 4, "0"),
+        new OPCode("+TIX", "2C", 4, "0"),
+        new OPCode("+LDX", "04", 4, "3"),
+        new OPCode("STF", "80", 3, "0"),
+        new OPCode("*RSUB", "4C", 3, "0"),
+        new OPCode("+LDCH", "50", 4, "1"),
+        new OPCode("+LDB", "68", 4, "3"),
+        new OPCode("*TD", "E0", 3, "1"),
+        new OPCode("+STF", "80", 4, "0"),
+        new OPCode("*DIV", "24", 3, "3"),
+        new OPCode("JEQ", "30", 3, "0"),
+        new OPCode("*STCH", "54", 3, "0"),
+        new OPCode("TIXR", "B8", 2, "0"),
+        new OPCode("AND", "40", 3, "3"),
+        new OPCode("STI", "D4", 3, "0"),
+        new OPCode("STB", "78", 3, "0"),
+        new OPCode("+TD", "E0", 4, "1"),
+        new OPCode("LDT", "74", 3, "3"),
+        new OPCode("STA", "0C", 3, "0"),
+        new OPCode("+LDA", "00", 4, "3"),
+        new OPCode("LPS", "D0", 3, "0"),
+        new OPCode("SSK", "EC", 3, "0"),
+        new OPCode("+RSUB", "4C", 4, "0"),
+        new OPCode("LDS", "6C", 3, "3"),
+        new OPCode("J", "3C", 3, "0"),
+        new OPCode("+AND", "40", 4, "3"),
+        new OPCode("+LDF", "70", 4, "0"),
+        new OPCode("+MUL", "20", 4, "3"),
+        new OPCode("*JGT", "34", 3, "0"),
+        new OPCode("SUBF", "5C", 3, "0"),
+        new OPCode("STX", "10", 3, "0"),
+        new OPCode("B", "3", -1, null),
+        new OPCode("*JSUB", "48", 3, "0"),
+        new OPCode("RMO", "AC", 2, "0"),
+        new OPCode("OR", "44", 3, "3"),
+        new OPCode("+SUB", "1C", 4, "3"),
+        new OPCode("LDL", "08", 3, "3"),
+        new OPCode("*COMP", "28", 3, "3"),
+        new OPCode("F", "6", -1, null),
+        new OPCode("+SSK", "EC", 4, "0"),
+        new OPCode("ADDF", "58", 3, "0"),
+        new OPCode("STT", "84", 3, "0"),
+        new OPCode("RSUB", "4C", 3, "0"),
+        new OPCode("*LDX", "04", 3, "3"),
+        new OPCode("TIO", "F8", 1, "0"),
+        new OPCode("+STI", "D4", 4, "0"),
+        new OPCode("*SUB", "1C", 3, "3"),
+        new OPCode("JLT", "38", 3, "0"),
+        new OPCode("+STB", "78", 4, "0"),
+        new OPCode("DIV", "24", 3, "3"),
+        new OPCode("*WD", "DC", 3, "1"),
+        new OPCode("+STX", "10", 4, "0"),
+        new OPCode("+JEQ", "30", 4, "0"),
+        new OPCode("FIX", "C4", 1, "0"),
+        new OPCode("STCH", "54", 3, "0"),
+        new OPCode("ADD", "18", 3, "3"),
+        new OPCode("T", "5", -1, null),
+        new OPCode("DIVF", "64", 3, "0"),
+        new OPCode("STSW", "E8", 3, "0"),
+        new OPCode("*STX", "10", 3, "0"),
+    };
+
+    private static final int[] DISPLACEMENTS = {
+        1, 2, -1, 0, -2, -3, 3, 0, 0, -7, 0, -8,
+        0, 2, -12, 0, 1, 1, 2, 0, 0, 2, 0, 0,
+        0, -13, -16, 0, 0, 0, -18, -20, 0, -31, 0, 1,
+        -33, -35, 0, 1, 0, -38, 4, -39, -42, 3, 3, -44,
+        0, 0, -45, 0, -50, -53, -56, -57, 0, 1, 2, 3,
+        -59, 0, 0, 0, 2, 0, -62, -63, -68, 0, 3, -71,
+        -76, 0, -77, -78, 0, 6, -79, 0, -83, -85, 3, 1,
+        1, 4, 4, 0, 0, 0, 0, -94, 0, 2, 0, 1,
+        0, 0, 4, 0, 1, 0, -97, 0, -98, 0, -99, -102,
+        0, -108, 0, 0, -112, 1, -114, 0, 8, 1, -117, -120,
+        -126, 2, 3, 18, 0, 0, 0, -128, 0, -131, -134, 4,
+        24, 7, -136, 0,
+    };
+
+    private OPCodeDictionary() {
+    }
+
+    @Override
+    public int searchForData(String key) {
+        int hash;
+        int displacement;
+        int index;
+        if (key == null || key.isEmpty()) {
+            return -1;
+        }
+        hash = PerfectHash.hash(key);
+        displacement = DISPLACEMENTS[PerfectHash.bucket(hash, SIZE)];
+        if (displacement < 0) {
+            index = -displacement - 1;
+        }
+        else {
+            index = PerfectHash.slot(hash, displacement, SIZE);
+        }
+        return key.equals(CODES[index].getLabel()) ? index : -1;
+    }
+
+    @Override
+    public OPCode getOPCode(int index) {
+        return CODES[index];
+    }
+}
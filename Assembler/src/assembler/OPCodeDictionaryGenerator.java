@@ -0,0 +1,234 @@
+package assembler;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * Turns an opcode list like SICOPS.txt into OPCodeDictionary.java, an
+ * OPTable with the entries compiled in and a minimal perfect hash over
+ * their labels. Run by the generate-opcodes target in build.xml.
+ *
+ * Usage: OPCodeDictionaryGenerator SICOPS.txt OPCodeDictionary.java
+ * @author Michael Frederick (n00725913)
+ */
+public class OPCodeDictionaryGenerator {
+
+    // Give up on a bucket after this many displacements
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+
+    /**
+     * @param args the opcode list and the java file to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: OPCodeDictionaryGenerator <opcode list> <output java file>");
+            System.exit(1);
+        }
+        try {
+            List<String[]> entries = readEntries(new File(args[0]));
+            String[] slots = new String[entries.size()];
+            int[] displacements = buildDisplacements(entries, slots);
+            writeSource(entries, slots, displacements, new File(args[1]));
+            System.out.printf("Wrote %d opcodes to %s%n", entries.size(), args[1]);
+        }
+        catch (IOException | IllegalStateException ex) {
+            System.out.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the list the same way SicAssembler.buildOPTable does, four
+     * tokens for an opcode and two for a register; the first entry for a
+     * label wins
+     * @param file
+     * @return label, opcode, format, unknown for each entry
+     * @throws FileNotFoundException
+     */
+    private static List<String[]> readEntries(File file) throws FileNotFoundException {
+        List<String[]> entries = new ArrayList<String[]>();
+        Set<String> labels = new HashSet<String>();
+        Scanner fileScanner = new Scanner(file);
+        while (fileScanner.hasNextLine()) {
+            StringTokenizer tokenMaker = new StringTokenizer(fileScanner.nextLine());
+            String[] entry;
+            if (tokenMaker.countTokens() == 4) {
+                entry = new String[] {tokenMaker.nextToken(), tokenMaker.nextToken(), tokenMaker.nextToken(), tokenMaker.nextToken()};
+            }
+            else if (tokenMaker.countTokens() == 2) {
+                entry = new String[] {tokenMaker.nextToken(), tokenMaker.nextToken(), "-1", null};
+            }
+            else {
+                continue;
+            }
+            if (labels.add(entry[0])) {
+                entries.add(entry);
+            }
+        }
+        fileScanner.close();
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("No opcodes found in " + file);
+        }
+        return entries;
+    }
+
+    /**
+     * Hash and displace: the labels are split into buckets by their hash,
+     * then starting with the biggest bucket each is given the first
+     * displacement that moves all of its labels into free slots. Buckets
+     * of one label go straight into a free slot, stored as -(slot + 1).
+     * @param entries
+     * @param slots filled with the label that ends up in each slot
+     * @return the displacement for each bucket
+     */
+    private static int[] buildDisplacements(List<String[]> entries, String[] slots) {
+        final int size = entries.size();
+        int[] displacements = new int[size];
+        List<List<String>> buckets = new ArrayList<List<String>>();
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<String>());
+        }
+        for (String[] entry : entries) {
+            buckets.get(PerfectHash.bucket(PerfectHash.hash(entry[0]), size)).add(entry[0]);
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        final List<List<String>> sorted = buckets;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sorted.get(b).size() - sorted.get(a).size();
+            }
+        });
+
+        int freeSlot = 0;
+        for (Integer bucketIndex : order) {
+            List<String> bucket = buckets.get(bucketIndex);
+            if (bucket.size() > 1) {
+                displacements[bucketIndex] = placeBucket(bucket, slots);
+            }
+            else if (bucket.size() == 1) {
+                while (slots[freeSlot] != null) {
+                    freeSlot++;
+                }
+                slots[freeSlot] = bucket.get(0);
+                displacements[bucketIndex] = -freeSlot - 1;
+            }
+        }
+        return displacements;
+    }
+
+    /**
+     * Finds the first displacement that puts every label of the bucket in
+     * a distinct free slot, and claims those slots
+     * @param bucket
+     * @param slots
+     * @return int displacement
+     */
+    private static int placeBucket(List<String> bucket, String[] slots) {
+        int size = slots.length;
+        int[] taken = new int[bucket.size()];
+        for (int displacement = 1; displacement < MAX_DISPLACEMENT; displacement++) {
+            boolean fits = true;
+            for (int i = 0; i < bucket.size() && fits; i++) {
+                taken[i] = PerfectHash.slot(PerfectHash.hash(bucket.get(i)), displacement, size);
+                if (slots[taken[i]] != null) {
+                    fits = false;
+                }
+                for (int j = 0; j < i && fits; j++) {
+                    if (taken[j] == taken[i]) {
+                        fits = false;
+                    }
+                }
+            }
+            if (fits) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    slots[taken[i]] = bucket.get(i);
+                }
+                return displacement;
+            }
+        }
+        throw new IllegalStateException("No displacement found for " + bucket);
+    }
+
+    private static void writeSource(List<String[]> entries, String[] slots, int[] displacements, File output) throws IOException {
+        List<String> labels = new ArrayList<String>();
+        for (String[] entry : entries) {
+            labels.add(entry[0]);
+        }
+        try (PrintWriter out = new PrintWriter(output, "UTF-8")) {
+            out.println("// Generated by OPCodeDictionaryGenerator from SICOPS.txt, do not edit.");
+            out.println("// Run \"ant generate-opcodes\" after changing the opcode list.");
+            out.println("package assembler;");
+            out.println();
+            out.println("/**");
+            out.println(" * The default opcode table, a minimal perfect hash over the SICOPS.txt");
+            out.println(" * entries so a lookup is one hash and one compare");
+            out.println(" */");
+            out.println("public final class OPCodeDictionary implements OPTable {");
+            out.println();
+            out.println("    public static final OPCodeDictionary INSTANCE = new OPCodeDictionary();");
+            out.println();
+            out.printf("    private static final int SIZE = %d;%n", slots.length);
+            out.println();
+            out.println("    private static final OPCode[] CODES = {");
+            for (int i = 0; i < slots.length; i++) {
+                String[] entry = entries.get(labels.indexOf(slots[i]));
+                out.printf("        new OPCode(\"%s\", \"%s\", %s, %s),%n", entry[0], entry[1], entry[2],
+                        entry[3] == null ? "null" : "\"" + entry[3] + "\"");
+            }
+            out.println("    };");
+            out.println();
+            out.println("    private static final int[] DISPLACEMENTS = {");
+            for (int i = 0; i < displacements.length; i += 12) {
+                StringBuilder row = new StringBuilder("       ");
+                for (int j = i; j < Math.min(i + 12, displacements.length); j++) {
+                    row.append(' ').append(displacements[j]).append(',');
+                }
+                out.println(row);
+            }
+            out.println("    };");
+            out.println();
+            out.println("    private OPCodeDictionary() {");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int searchForData(String key) {");
+            out.println("        int hash;");
+            out.println("        int displacement;");
+            out.println("        int index;");
+            out.println("        if (key == null || key.isEmpty()) {");
+            out.println("            return -1;");
+            out.println("        }");
+            out.println("        hash = PerfectHash.hash(key);");
+            out.println("        displacement = DISPLACEMENTS[PerfectHash.bucket(hash, SIZE)];");
+            out.println("        if (displacement < 0) {");
+            out.println("            index = -displacement - 1;");
+            out.println("        }");
+            out.println("        else {");
+            out.println("            index = PerfectHash.slot(hash, displacement, SIZE);");
+            out.println("        }");
+            out.println("        return key.equals(CODES[index].getLabel()) ? index : -1;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public OPCode getOPCode(int index) {");
+            out.println("        return CODES[index];");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+}// end Class OPCodeDictionaryGenerator
@@ -9,10 +9,12 @@ package assembler;
  *
  * @author Michael
  */
-public class OPHashTable {
+public class OPHashTable implements OPTable {
     private OPCode[] data;
     private int size;
+    private int occupied;
     private DataItem deletedRecord;
+    private ProbeStats insertStats;
     
     /**
      * Generates a HashTable
@@ -34,11 +36,13 @@ public class OPHashTable {
     public void insertData(OPCode item) {
         int insertionIndex = this.hashFunction(item.getLabel(), this.size);
         int collisions = 0;
+        int probes = 1;
         boolean searching = true;
         
         while (searching) {
             if (this.data[insertionIndex] == null) {
                 this.data[insertionIndex] = item;
+                this.occupied++;
                 //System.out.println("Inserting '" + item.getLabel() + "' with value: " + item.getValue() + " at index: " + insertionIndex + " with " + collisions);
                 searching = false;
             }
@@ -49,13 +53,18 @@ public class OPHashTable {
             else if (collisions > this.size) {
                 // Switching to Linear Probing
                 insertionIndex = (insertionIndex + 1) % this.size;
+                probes++;
             }
             else {
                 // Going to next cell
                 collisions++;
                 insertionIndex = this.collisionResolver(insertionIndex, collisions);
+                probes++;
             }
         }
+        if (this.insertStats != null) {
+            this.insertStats.record(probes);
+        }
         
     }
 
@@ -64,6 +73,16 @@ public class OPHashTable {
      * @param key 
      */
     public int searchForData(String key) {
+        return this.searchForData(key, null);
+    }
+    
+    /**
+     * Searches the Data array for the DataItem with the same string label
+     * @param key 
+     * @param stats where the lookup is counted, or null
+     */
+    @Override
+    public int searchForData(String key, ProbeStats stats) {
         int insertionIndex = this.hashFunction(key, this.size);
         int collisions = 0;
         boolean searching = true;
@@ -83,10 +102,68 @@ public class OPHashTable {
                 insertionIndex = this.collisionResolver(insertionIndex, collisions);
             }
         }
+        if (stats != null) {
+            stats.record(collisions + 1);
+        }
         
         return insertionIndex;
     }
     
+    /**
+     * Get the value of insertStats
+     * @return where inserts are counted, or null
+     */
+    public ProbeStats getInsertStats() {
+        return insertStats;
+    }
+    
+    /**
+     * Set the value of insertStats
+     * @param insertStats where the slots an insert looks at are counted, null to stop counting
+     */
+    public void setInsertStats(ProbeStats insertStats) {
+        this.insertStats = insertStats;
+    }
+    
+    /**
+     * Get the number of slots
+     * @return the table size, a prime
+     */
+    public int getCapacity() {
+        return this.size;
+    }
+    
+    /**
+     * Get the number of slots holding an opcode
+     * @return int
+     */
+    public int getOccupiedSlots() {
+        return this.occupied;
+    }
+    
+    /**
+     * Get the load factor
+     * @return occupied slots over capacity
+     */
+    public double getLoadFactor() {
+        return (double) this.occupied / this.size;
+    }
+    
+    /**
+     * Measures how many slots a search for each opcode in the table looks
+     * at, to check how well the hash spreads the opcode list
+     * @return ProbeStats with one lookup per opcode
+     */
+    public ProbeStats measureProbes() {
+        ProbeStats stats = new ProbeStats();
+        for (OPCode code : this.data) {
+            if (code != null) {
+                this.searchForData(code.getLabel(), stats);
+            }
+        }
+        return stats;
+    }
+    
     /**
      * Hashes the string by each character value and Horner's Polynomial
      * @param str
@@ -0,0 +1,37 @@
+package assembler;
+
+/**
+ * Lookup of opcodes and register symbols by mnemonic
+ * @author Michael Frederick (n00725913)
+ */
+public interface OPTable {
+
+    /**
+     * Searches the table for the OPCode with the same label
+     * @param key
+     * @return index, or -1 if the label is not in the table
+     */
+    int searchForData(String key);
+
+    /**
+     * Searches the table, counting the lookup. A table that finds any
+     * key with one hash and one compare can leave this as it is.
+     * @param key
+     * @param stats where the lookup is counted, or null
+     * @return index, or -1 if the label is not in the table
+     */
+    default int searchForData(String key, ProbeStats stats) {
+        int index = this.searchForData(key);
+        if (stats != null) {
+            stats.record(1);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the OPCode at an index returned by searchForData
+     * @param index
+     * @return OPCode
+     */
+    OPCode getOPCode(int index);
+}
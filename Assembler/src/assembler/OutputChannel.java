@@ -0,0 +1,148 @@
+package assembler;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * A buffered output file that stays open for the whole assembly, or the
+ * same over any Writer (a StringWriter to keep the output in memory)
+ * @author Michael Frederick (n00725913)
+ */
+public class OutputChannel implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private String filename;
+    private Writer writer;
+    private Writer target;
+    private boolean closed;
+    private long bytesWritten;
+    private char[] scratch = new char[256];
+
+    /**
+     * Opens (and truncates) the file for writing
+     * @param filename
+     * @param bufferSize size of the write buffer in chars
+     * @throws IOException
+     */
+    public OutputChannel(String filename, int bufferSize) throws IOException {
+        this.filename = filename;
+        this.writer = new BufferedWriter(new FileWriter(filename, false), bufferSize);
+        this.closed = false;
+    }
+
+    /**
+     * Opens (and truncates) the file, written to on output's thread
+     * @param filename
+     * @param bufferSize chars handed to the thread at a time
+     * @param output
+     * @throws IOException
+     */
+    public OutputChannel(String filename, int bufferSize, AsyncOutput output) throws IOException {
+        this.filename = filename;
+        this.writer = output.open(new FileWriter(filename, false), bufferSize);
+        this.closed = false;
+    }
+
+    /**
+     * Writes to a Writer instead of a file
+     * @param filename the name the output goes by, nothing is opened
+     * @param writer closed along with the channel
+     */
+    public OutputChannel(String filename, Writer writer) {
+        this.filename = filename;
+        this.writer = writer;
+        this.target = writer;
+        this.closed = false;
+    }
+
+    /**
+     * Get the value of filename
+     * @return the value of filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Writes the message followed by a line separator
+     * @param message
+     * @throws IOException
+     */
+    public void println(CharSequence message) throws IOException {
+        if (message instanceof String) {
+            this.writer.write((String) message);
+        }
+        else {
+            // Copy through a reused array rather than making a String
+            int length = message.length();
+            if (this.scratch.length < length) {
+                this.scratch = new char[Math.max(length, this.scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                this.scratch[i] = message.charAt(i);
+            }
+            this.writer.write(this.scratch, 0, length);
+        }
+        this.writer.write(System.lineSeparator());
+        this.bytesWritten += message.length() + System.lineSeparator().length();
+    }
+
+    /**
+     * Get the value of bytesWritten
+     * @return how much has been written, the output is ASCII so one byte a char
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Pushes anything still buffered out to the file
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (!this.closed) {
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Writes text over what has already been written, from position on.
+     * Only files and StringWriters can be written over.
+     * @param position offset of the first char to replace
+     * @param text
+     * @throws IOException
+     */
+    public void patch(long position, String text) throws IOException {
+        this.flush();
+        if (this.target == null) {
+            try (RandomAccessFile file = new RandomAccessFile(this.filename, "rw")) {
+                file.seek(position);
+                file.writeBytes(text);
+            }
+        }
+        else if (this.target instanceof StringWriter) {
+            ((StringWriter) this.target).getBuffer().replace((int) position, (int) position + text.length(), text);
+        }
+        else {
+            throw new IOException(this.filename + " can't be written over");
+        }
+    }
+
+    /**
+     * Flushes and closes the file, safe to call more than once
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.writer.close();
+        }
+    }
+}// end Class OutputChannel
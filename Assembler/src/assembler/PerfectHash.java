@@ -0,0 +1,54 @@
+package assembler;
+
+/**
+ * The hash functions shared by OPCodeDictionaryGenerator and the
+ * OPCodeDictionary it writes, the two have to agree exactly
+ *
+ * A key is hashed once; the first level picks a bucket from that hash and
+ * the bucket's displacement picks the final slot.
+ * @author Michael Frederick (n00725913)
+ */
+public final class PerfectHash {
+
+    private PerfectHash() {
+    }
+
+    /**
+     * 32 bit FNV-1a over the characters of the key
+     * @param key
+     * @return int hash
+     */
+    public static int hash(String key) {
+        int value = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            value ^= key.charAt(i);
+            value *= 0x01000193;
+        }
+        return value;
+    }
+
+    /**
+     * First level, which displacement to use
+     * @param hash
+     * @param size
+     * @return int bucket
+     */
+    public static int bucket(int hash, int size) {
+        return (hash & 0x7fffffff) % size;
+    }
+
+    /**
+     * Second level, the slot for a bucket displaced by displacement
+     * @param hash
+     * @param displacement
+     * @param size
+     * @return int slot
+     */
+    public static int slot(int hash, int displacement, int size) {
+        int value = hash + displacement * 0x9e3779b9;
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        return (value & 0x7fffffff) % size;
+    }
+}// end Class PerfectHash
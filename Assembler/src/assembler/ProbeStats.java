@@ -0,0 +1,87 @@
+package assembler;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the lookups made in a hash table and the slots they looked at
+ *
+ * Besides the totals it keeps the longest probe and a histogram of probe
+ * lengths: bucket n counts the lookups that looked at n slots, and the
+ * last bucket everything from HISTOGRAM_SIZE - 1 up. Pass two searches
+ * the tables from several threads at once, so everything is kept in
+ * LongAdders and a LongAccumulator.
+ * @author Michael Frederick (n00725913)
+ */
+public class ProbeStats {
+
+    public static final int HISTOGRAM_SIZE = 16;
+
+    private LongAdder lookups = new LongAdder();
+    private LongAdder probes = new LongAdder();
+    private LongAccumulator maxProbes = new LongAccumulator(Math::max, 0);
+    private LongAdder[] histogram = new LongAdder[HISTOGRAM_SIZE];
+
+    public ProbeStats() {
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            this.histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts one lookup
+     * @param probes how many slots it looked at
+     */
+    public void record(int probes) {
+        this.lookups.increment();
+        this.probes.add(probes);
+        this.maxProbes.accumulate(probes);
+        this.histogram[Math.min(probes, HISTOGRAM_SIZE - 1)].increment();
+    }
+
+    /**
+     * Get the number of lookups
+     * @return the value of lookups
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Get the number of slots looked at
+     * @return the value of probes
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Get the mean probe length
+     * @return slots looked at per lookup, 0 if there were none
+     */
+    public double getMeanProbes() {
+        long count = this.getLookups();
+        return (count == 0) ? 0 : (double) this.getProbes() / count;
+    }
+
+    /**
+     * Get the longest probe
+     * @return the most slots a single lookup looked at
+     */
+    public long getMaxProbes() {
+        return maxProbes.get();
+    }
+
+    /**
+     * Get the probe length histogram
+     * @return lookups by the number of slots they looked at, the last
+     * bucket holding the longer ones too
+     */
+    public long[] getHistogram() {
+        long[] counts = new long[HISTOGRAM_SIZE];
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            counts[i] = this.histogram[i].sum();
+        }
+        return counts;
+    }
+}// end Class ProbeStats
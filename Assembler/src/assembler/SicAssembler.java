@@ -4,85 +4,922 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * @author Michael Frederick (n00725913)
  */
 public class SicAssembler {
 
-    private String listFile;
-    private String objectFile;
-    private String intermediateFile;
+    private OutputChannel listChannel;
+    private OutputChannel objectChannel;
+    private OutputChannel intermediateChannel;
     private HashTable symbols;
-    private OPHashTable opcodes;
+    private OPTable opcodes;
     private String[] assemblerDirectives = {"BASE", "LTORG", "START", "END"};
+    // x, b, p and e bits of a format 3/4 instruction
+    private static final int INDEXED = 8;
+    private static final int BASE_RELATIVE = 4;
+    private static final int PC_RELATIVE = 2;
+    private static final int EXTENDED = 1;
+    // Both passes work on lines in chunks of this many, in parallel once a
+    // program has more than PARALLEL_THRESHOLD lines
+    private static final int CHUNK_SIZE = 4096;
+    private static final int PARALLEL_THRESHOLD = 32768;
     // Build something for literals
     private ArrayList<String> literals = new ArrayList<String>();
+    private ArrayList<IntermediateLine> intermediate = new ArrayList<IntermediateLine>();
+    private LineLexer sourceLexer = LineLexer.forSource();
+    // Reused by pass two for each line's object code and output line
+    private StringBuilder codeBuffer = new StringBuilder(16);
+    private StringBuilder lineBuffer = new StringBuilder(128);
+    
+    private File sourceFile;
+    private AssemblerOptions options;
+    private AssemblyCache cache;
+    // Kept between calls to reassemble(): the source, one line per source
+    // line up to END, and the duplicate labels seen in it
+    private List<String> assembledSource;
+    private List<AssembledLine> assembled;
+    private int startAddress;
+    private int duplicateLabels;
+    private int encodedCount;
+    // Timings and counters of the last run, see --stats
+    private AssemblyStats stats = new AssemblyStats();
+    private CountingOPTable countingOpcodes;
+    // Set when assembling from memory: the source, and the output kept
+    // by extension instead of being written to files
+    private byte[] sourceBytes;
+    private Map<String, StringWriter> outputs;
+    private List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+    // Set when streaming: the source is read from sourceStream and the
+    // object program written to objectStream. A one pass object program
+    // is held in heldObject until its header has been patched.
+    private InputStream sourceStream;
+    private OutputStream objectStream;
+    private StringWriter heldObject;
+    // With --async-write, the thread writing this run's output
+    private AsyncOutput asyncOutput;
+    // The first output that couldn't be written, which fails the run
+    private IOException writeError;
     
     /**
      * @param args the command line arguments
      */
     public SicAssembler(String[] args) {
+        this.options = AssemblerOptions.parse(args);
+
+        if (!isNullOrEmpty(options.getSourceFile())) {
+            this.sourceFile = new File(options.getSourceFile());
+            try {
+                this.setOpcodes(loadOPTable(options));
+                this.cache = AssemblyCache.forOptions(options);
+                this.assemble();
+            }
+            catch (FileNotFoundException e) {
+                System.out.println("Opcode list not found: " + e.getMessage());
+            }
+            catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        else {
+            System.out.println("No file to Assemble");
+        }
+    }
+    
+    /**
+     * Sets up the assembly of one file, run it with assemble()
+     * @param sourceFile
+     * @param opcodes shared, it is only read from
+     * @param options
+     */
+    public SicAssembler(File sourceFile, OPTable opcodes, AssemblerOptions options) {
+        this.sourceFile = sourceFile;
+        this.options = options;
+        this.setOpcodes(opcodes);
+    }
+    
+    /**
+     * Sets up the assembly of source text, run it with assembleInMemory()
+     * @param name what the source is called
+     * @param source
+     * @param opcodes shared, it is only read from
+     * @param options
+     */
+    SicAssembler(String name, String source, OPTable opcodes, AssemblerOptions options) {
+        this.sourceFile = new File(name);
+        this.sourceBytes = source.getBytes();
+        this.outputs = new HashMap<String, StringWriter>();
+        this.options = options;
+        this.setOpcodes(opcodes);
+    }
+    
+    /**
+     * Sets up the assembly of a stream, run it with assemble(). The object
+     * program is written to object, the listing only goes to the file
+     * options.getListingFile() names, if any, and messages go to standard
+     * error. Neither stream is closed.
+     * @param source
+     * @param object
+     * @param opcodes shared, it is only read from
+     * @param options
+     */
+    public SicAssembler(InputStream source, OutputStream object, OPTable opcodes, AssemblerOptions options) {
+        this.sourceFile = new File("stdin");
+        this.sourceStream = source;
+        this.objectStream = object;
+        this.options = options;
+        this.setOpcodes(opcodes);
+    }
+    
+    /**
+     * Uses the opcode table, through a CountingOPTable when --stats is on
+     * @param opcodes
+     */
+    private void setOpcodes(OPTable opcodes) {
+        if (options.getStatsFormat() != null) {
+            this.countingOpcodes = new CountingOPTable(opcodes);
+            this.opcodes = this.countingOpcodes;
+        }
+        else {
+            this.opcodes = opcodes;
+        }
+    }
+    
+    /**
+     * Runs both passes over the source file and writes the .lst and .obj
+     * files (and the .imd file if asked for) to the working directory
+     * @return true if the assembly ran to the end
+     */
+    public boolean assemble() {
         int temp;
-        int lineCount;
-        String opCodeList = "SICOPS.txt";
-        File file;
+        String baseName;
+        String key = null;
+        boolean success = false;
+        List<String> lines;
+        File file = this.sourceFile;
 
-        if (args[0] != null || !args[0].isEmpty()) {
-            file = new File(args[0]);
-            if (!file.isDirectory() && file.exists()) {
-                temp = file.getName().lastIndexOf(".");
-                this.listFile = file.getName().substring(0, temp) + ".lst";
-                this.objectFile = file.getName().substring(0, temp) + ".obj";
-                this.intermediateFile = file.getName().substring(0, temp) + ".imd";
-                try {
-                    lineCount = getLineCount(file);
-                    symbols = new HashTable(lineCount);
-                    lineCount = getLineCount(new File(opCodeList));
-                    opcodes = buildOPTable(lineCount, opCodeList);
-                    temp = passOneAssemble(file, symbols, opcodes);
-                    passTwoAssemble(temp, symbols, opcodes);
+        this.startRun();
+        if (this.hasSource()) {
+            baseName = getBaseName(file);
+            try {
+                if (this.cache != null) {
+                    stats.startPhase("cache");
+                    key = this.cache.key(file, options);
+                    success = this.cache.restore(key, baseName);
+                    stats.setCached(success);
+                    stats.endPhase();
                 }
-                catch (Exception e) {
-                    e.printStackTrace(System.out);
+                if (!success) {
+                    if (options.getWriteQueue() > 0 && this.outputs == null) {
+                        this.asyncOutput = new AsyncOutput(options.getWriteQueue());
+                    }
+                    this.listChannel = openListing(baseName);
+                    this.objectChannel = openChannel(baseName, ".obj");
+                    symbols = new HashTable();
+                    countLookups(symbols);
+                    if (options.isOnePass()) {
+                        stats.startPhase("one pass");
+                        onePassAssemble(symbols, opcodes);
+                    }
+                    else {
+                        stats.startPhase("read");
+                        lines = readSourceLines();
+                        stats.startPhase("pass one");
+                        temp = passOneAssemble(lines, symbols, opcodes);
+                        if (options.isKeepIntermediate()) {
+                            stats.startPhase("intermediate");
+                            this.intermediateChannel = openChannel(baseName, ".imd");
+                            writeIntermediate();
+                        }
+                        stats.startPhase("pass two");
+                        passTwoAssemble(temp, symbols, opcodes);
+                    }
+                    success = true;
                 }
             }
-            else {
-                System.out.println("Invalid Filename");
+            catch (Exception e) {
+                this.fail(e);
+            }
+            finally {
+                closeChannels();
+            }
+            if (success && this.writeError != null) {
+                success = false;
+                this.diagnostics.add(new Diagnostic(-1, null, this.writeError.toString()));
+            }
+            if (success && key != null && !stats.isCached()) {
+                stats.startPhase("cache");
+                this.cache.store(key, baseName, this.outputExtensions());
             }
         }
         else {
-            System.out.println("No file to Assemble");
+            messages().println("Invalid Filename");
+        }
+        this.finishStats(success);
+        return success;
+    }
+    
+    /**
+     * Runs assemble() on the source given to the constructor, keeping
+     * the output in memory
+     * @return AssemblyResult
+     */
+    AssemblyResult assembleInMemory() {
+        boolean success = this.assemble();
+        Map<String, Integer> labels = new LinkedHashMap<String, Integer>();
+        List<DataItem> items = (this.symbols != null) ? this.symbols.getItems() : new ArrayList<DataItem>();
+        Collections.sort(items, (a, b) -> (a.getAddress() != b.getAddress())
+                ? Integer.compare(a.getAddress(), b.getAddress()) : a.getLabel().compareTo(b.getLabel()));
+        for (DataItem item : items) {
+            labels.put(item.getLabel(), item.getAddress());
+        }
+        return new AssemblyResult(this.sourceFile.getPath(), success, output(".obj"),
+                this.outputs.containsKey(".lst") ? output(".lst") : null,
+                this.outputs.containsKey(".imd") ? output(".imd") : null,
+                Collections.unmodifiableMap(labels), Collections.unmodifiableList(this.diagnostics), this.stats);
+    }
+    
+    /**
+     * @param extension
+     * @return what was written for the extension, "" if nothing was
+     */
+    private String output(String extension) {
+        StringWriter writer = this.outputs.get(extension);
+        return (writer != null) ? writer.toString() : "";
+    }
+    
+    /**
+     * Whether there is anything to assemble
+     * @return true for source text, or a file that exists
+     */
+    private boolean hasSource() {
+        return this.sourceBytes != null || this.sourceStream != null
+                || (!this.sourceFile.isDirectory() && this.sourceFile.exists());
+    }
+    
+    /**
+     * Opens the output baseName + extension, a file unless assembling
+     * in memory or streaming
+     * @param baseName
+     * @param extension
+     * @return OutputChannel, or null when streaming without a listing file
+     * @throws IOException
+     */
+    private OutputChannel openChannel(String baseName, String extension) throws IOException {
+        StringWriter writer;
+        if (this.objectStream != null && ".obj".equals(extension)) {
+            return openObjectStream();
+        }
+        if (this.objectStream != null && ".lst".equals(extension)) {
+            return (options.getListingFile() != null) ? openFile(options.getListingFile()) : null;
+        }
+        if (this.outputs == null) {
+            return openFile(baseName + extension);
+        }
+        writer = new StringWriter();
+        this.outputs.put(extension, writer);
+        return new OutputChannel(baseName + extension, writer);
+    }
+    
+    /**
+     * Opens where the listing goes: the .lst file, or with --no-listing
+     * nothing but the ListingTable it can be made from later. Only
+     * assembling a file gets a table.
+     * @param baseName
+     * @return OutputChannel, or null when there is no listing
+     * @throws IOException
+     */
+    private OutputChannel openListing(String baseName) throws IOException {
+        Writer table;
+        String filename = baseName + ListingTable.EXTENSION;
+        if (this.outputs == null && this.objectStream == null) {
+            removeStaleListing(baseName);
+        }
+        if (!options.isNoListing()) {
+            return openChannel(baseName, ".lst");
+        }
+        if (!options.isListingTable() || this.sourceBytes != null || this.sourceStream != null) {
+            return null;
+        }
+        if (this.asyncOutput != null) {
+            table = this.asyncOutput.open(new FileWriter(filename, false), options.getBufferSize());
+        }
+        else {
+            table = new BufferedWriter(new FileWriter(filename, false), options.getBufferSize());
         }
+        return new ListingTable(filename, table, this.sourceFile, options.getBufferSize());
     }
+    
+    /**
+     * Deletes the .lst or .lsx this run won't write, so one left by an
+     * earlier run isn't taken for this one's listing
+     * @param baseName
+     */
+    private void removeStaleListing(String baseName) {
+        if (options.isNoListing()) {
+            new File(baseName + ".lst").delete();
+        }
+        if (!options.isNoListing() || !options.isListingTable()) {
+            new File(baseName + ListingTable.EXTENSION).delete();
+        }
+    }
+    
+    /**
+     * The files a run writes, as extensions of the base name
+     * @return String[]
+     */
+    private String[] outputExtensions() {
+        List<String> extensions = new ArrayList<String>();
+        extensions.add(".obj");
+        if (!options.isNoListing()) {
+            extensions.add(".lst");
+        }
+        else if (options.isListingTable()) {
+            extensions.add(ListingTable.EXTENSION);
+        }
+        if (options.isKeepIntermediate() && !options.isOnePass()) {
+            extensions.add(".imd");
+        }
+        return extensions.toArray(new String[extensions.size()]);
+    }
+    
+    /**
+     * Opens an output file, written on the writer thread with --async-write
+     * @param filename
+     * @return OutputChannel
+     * @throws IOException
+     */
+    private OutputChannel openFile(String filename) throws IOException {
+        if (this.asyncOutput != null) {
+            return new OutputChannel(filename, options.getBufferSize(), this.asyncOutput);
+        }
+        return new OutputChannel(filename, options.getBufferSize());
+    }
+    
+    /**
+     * Opens the object program on objectStream, which is flushed rather
+     * than closed at the end. The one pass assembler patches the header
+     * once it is done, which a stream can't take, so then the program is
+     * held in memory and written out by closeChannels()
+     * @return OutputChannel
+     */
+    private OutputChannel openObjectStream() {
+        if (options.isOnePass()) {
+            this.heldObject = new StringWriter();
+            return new OutputChannel("stdout", this.heldObject);
+        }
+        OutputStream out = new FilterOutputStream(this.objectStream) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                this.out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.flush();
+            }
+        };
+        if (this.asyncOutput != null) {
+            return new OutputChannel("stdout", this.asyncOutput.open(new OutputStreamWriter(out), options.getBufferSize()));
+        }
+        return new OutputChannel("stdout", new BufferedWriter(new OutputStreamWriter(out), options.getBufferSize()));
+    }
+    
+    /**
+     * Where messages are printed, standard error when standard output
+     * has the object program on it
+     * @return PrintStream
+     */
+    private PrintStream messages() {
+        return (this.objectStream != null) ? System.err : System.out;
+    }
+    
+    /**
+     * Opens the source for reading
+     * @return LineReader
+     * @throws IOException
+     */
+    private LineReader openSource() throws IOException {
+        if (this.sourceBytes != null) {
+            return new LineReader(this.sourceBytes);
+        }
+        if (this.sourceStream != null) {
+            return new LineReader(this.sourceStream, options.getBufferSize());
+        }
+        return new LineReader(this.sourceFile, options.getBufferSize(), options.isMemoryMapped());
+    }
+    
+    /**
+     * Records what stopped the assembly; it is only printed when
+     * assembling files
+     * @param e
+     */
+    private void fail(Exception e) {
+        this.diagnostics.add(new Diagnostic(-1, null, e.toString()));
+        if (this.outputs == null) {
+            e.printStackTrace(messages());
+        }
+    }
+    
+    /**
+     * Get the value of stats
+     * @return the timings and counters of the last run
+     */
+    public AssemblyStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Starts a new AssemblyStats and list of diagnostics for a run;
+     * lookups are only counted when --stats is on
+     */
+    private void startRun() {
+        this.stats = new AssemblyStats();
+        this.diagnostics = new ArrayList<Diagnostic>();
+        this.writeError = null;
+        if (this.countingOpcodes != null) {
+            this.countingOpcodes.setProbeStats(this.stats.getOpcodeProbes());
+        }
+    }
+    
+    /**
+     * Counts the symbol table's lookups in the stats when --stats is on
+     * @param symbols
+     */
+    private void countLookups(HashTable symbols) {
+        if (options.getStatsFormat() != null) {
+            symbols.setProbeStats(this.stats.getSymbolProbes());
+            symbols.setInsertStats(this.stats.getSymbolInserts());
+        }
+    }
+    
+    /**
+     * Stops the clock and prints the report if --stats asked for one
+     * @param success
+     */
+    private void finishStats(boolean success) {
+        this.stats.finish(success);
+        if (this.symbols != null && !this.stats.isCached() && options.getStatsFormat() != null) {
+            this.stats.setSymbolTable(this.symbols);
+        }
+        if (this.countingOpcodes != null && !this.stats.isCached()) {
+            this.stats.setOPTable(this.countingOpcodes.getTable());
+        }
+        if (this.outputs != null) {
+            // Handed back in the result instead
+            return;
+        }
+        if ("json".equals(options.getStatsFormat())) {
+            messages().print(this.stats.toJson(this.sourceFile.getPath()));
+        }
+        else if (options.getStatsFormat() != null) {
+            messages().print(this.stats.toText(this.sourceFile.getPath()));
+        }
+    }
+    
+    /**
+     * Set the value of cache
+     * @param cache where assemble() looks for and keeps its output, null for none
+     */
+    public void setCache(AssemblyCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Assembles the file again, only encoding the lines an edit could
+     * have changed. The first call assembles all of it and keeps the
+     * parsed lines, symbol table and object code for the next call.
+     * 
+     * The new source is compared with the last one to find the run of
+     * lines between an unchanged start and an unchanged end. Only those
+     * lines are parsed, their labels are swapped in the symbol table and
+     * the lines after them are moved by the change in length. A line is
+     * encoded again when it is new, its operand's label was added or
+     * removed, or what its code was worked out from has moved (see
+     * isStale()). An edit to the first line or to END, or a program with
+     * duplicate labels, is assembled from scratch.
+     * @return true if the assembly ran to the end
+     */
+    public boolean reassemble() {
+        boolean success = false;
+        boolean updated = false;
+        String baseName;
+        List<String> source;
+        File file = this.sourceFile;
+
+        if (file.isDirectory() || !file.exists()) {
+            System.out.println("Invalid Filename");
+            return false;
+        }
+        baseName = getBaseName(file);
+        this.startRun();
+        try {
+            if (options.getWriteQueue() > 0 && this.outputs == null) {
+                this.asyncOutput = new AsyncOutput(options.getWriteQueue());
+            }
+            this.listChannel = openListing(baseName);
+            this.objectChannel = openChannel(baseName, ".obj");
+            stats.startPhase("read");
+            source = readSourceLines();
+            stats.startPhase("update");
+            this.encodedCount = 0;
+            if (this.symbols != null) {
+                countLookups(this.symbols);
+            }
+            if (this.assembled == null || !updateAssembled(source)) {
+                rebuildAssembled(source);
+            }
+            updated = true;
+            stats.startPhase("write");
+            writeAssembled();
+            success = true;
+        }
+        catch (Exception e) {
+            if (!updated) {
+                // Part way through an update, start again next time
+                this.assembled = null;
+            }
+            this.fail(e);
+        }
+        finally {
+            closeChannels();
+        }
+        if (success && this.writeError != null) {
+            success = false;
+            this.diagnostics.add(new Diagnostic(-1, null, this.writeError.toString()));
+        }
+        this.finishStats(success);
+        return success;
+    }
+    
+    /**
+     * Get the value of encodedCount
+     * @return how many lines the last reassemble() encoded
+     */
+    public int getEncodedCount() {
+        return encodedCount;
+    }
+    
+    /**
+     * Parses and encodes the whole program
+     * @param source
+     */
+    private void rebuildAssembled(List<String> source) {
+        DataItem item;
+        this.symbols = new HashTable();
+        countLookups(this.symbols);
+        this.assembled = new ArrayList<AssembledLine>();
+        this.assembledSource = source;
+        this.duplicateLabels = 0;
+        if (source.isEmpty()) {
+            return;
+        }
+        item = readStartLine(source.get(0), this.symbols, this.opcodes);
+        this.startAddress = (item != null) ? Integer.parseInt(item.getOperand(), 16) : 0;
+        this.assembled.add(new AssembledLine(source.get(0), item, 0));
+        this.assembled.addAll(parseLines(source, 1, source.size(), this.startAddress));
+        encodeAssembled(Collections.<String>emptySet());
+    }
+    
+    /**
+     * Brings the kept program up to date with the new source
+     * @param source
+     * @return false if it has to be assembled from scratch instead
+     */
+    private boolean updateAssembled(List<String> source) {
+        int prefix = 0;
+        int suffix = 0;
+        int oldEnd;
+        int newEnd;
+        int delta = 0;
+        DataItem item;
+        List<AssembledLine> parsed;
+        Set<String> changedLabels = new HashSet<String>();
+        List<String> old = this.assembledSource;
+        int last = this.assembled.size() - 1;
+        DataItem lastItem = (last > 0) ? this.assembled.get(last).getItem() : null;
+        boolean ended = lastItem != null && "END".equals(lastItem.getMneumonic());
         
-    public int getLineCount(File file) throws FileNotFoundException {
-        int lineCount = 0;
-        Scanner fileScanner = new Scanner(file);
-            while (fileScanner.hasNext()){
-                lineCount++;
-                //I'm not inserting the values yet
-                fileScanner.nextLine();
+        while (prefix < old.size() && prefix < source.size() && old.get(prefix).equals(source.get(prefix))) {
+            prefix++;
+        }
+        if (prefix == old.size() && prefix == source.size()) {
+            // Nothing changed
+            return true;
+        }
+        if (prefix == 0 || this.duplicateLabels > 0) {
+            return false;
+        }
+        if (ended && prefix > last) {
+            // Only lines after END changed
+            this.assembledSource = source;
+            return true;
+        }
+        while (suffix < old.size() - prefix && suffix < source.size() - prefix
+                && old.get(old.size() - 1 - suffix).equals(source.get(source.size() - 1 - suffix))) {
+            suffix++;
+        }
+        oldEnd = old.size() - suffix;
+        newEnd = source.size() - suffix;
+        if (ended && last < oldEnd) {
+            // END was edited
+            return false;
+        }
+        
+        // Take out the old lines' labels, then parse the new lines in
+        for (int i = prefix; i < oldEnd; i++) {
+            item = this.assembled.get(i).getItem();
+            if (item != null) {
+                delta -= item.getCommandLength();
+                if (!isNullOrEmpty(item.getLabel())) {
+                    this.symbols.removeData(item.getLabel());
+                    changedLabels.add(item.getLabel());
+                }
             }
+        }
+        parsed = parseLines(source, prefix, newEnd, addressAfter(prefix - 1));
+        if (this.duplicateLabels > 0) {
+            return false;
+        }
+        for (AssembledLine line : parsed) {
+            item = line.getItem();
+            if (item != null) {
+                if ("END".equals(item.getMneumonic())) {
+                    return false;
+                }
+                delta += item.getCommandLength();
+                if (!isNullOrEmpty(item.getLabel())) {
+                    changedLabels.add(item.getLabel());
+                }
+            }
+        }
         
-        return lineCount;
+        // Move everything after the edit; the symbol table holds the same
+        // items so the labels move with them
+        if (delta != 0) {
+            for (int i = oldEnd; i <= last; i++) {
+                item = this.assembled.get(i).getItem();
+                if (item != null) {
+                    item.setAddress(item.getAddress() + delta);
+                }
+            }
+        }
+        this.assembled.subList(prefix, oldEnd).clear();
+        this.assembled.addAll(prefix, parsed);
+        this.assembledSource = source;
+        encodeAssembled(changedLabels);
+        return true;
+    }
+    
+    /**
+     * Parses source lines, giving them addresses and putting their labels
+     * in the symbol table, up to END
+     * @param source
+     * @param from first line to parse
+     * @param to line to stop before
+     * @param address address of the first line
+     * @return the parsed lines
+     */
+    private List<AssembledLine> parseLines(List<String> source, int from, int to, int address) {
+        int index;
+        String line;
+        String temp;
+        DataItem item;
+        List<AssembledLine> parsed = new ArrayList<AssembledLine>(to - from);
+        for (int i = from; i < to; i++) {
+            line = source.get(i);
+            if (line.charAt(0) == '.') {
+                // Comment Line
+                parsed.add(new AssembledLine(line, null, 0));
+                continue;
+            }
+            item = buildCommand(line, this.opcodes);
+            item.setAddress(address);
+            if (!isNullOrEmpty(temp = this.symbols.insertData(item))) {
+                item.addError(temp);
+                this.duplicateLabels++;
+            }
+            index = this.opcodes.searchForData(item.getMneumonic());
+            parsed.add(new AssembledLine(line, item, (index >= 0) ? this.opcodes.getOPCode(index).getFormat() : 0));
+            if ("END".equals(item.getMneumonic())) {
+                break;
+            }
+            address += item.getCommandLength();
+            if ("LTORG".equals(item.getMneumonic())) {
+                address = this.printLiterals(address);
+            }
+        }
+        return parsed;
+    }
+    
+    /**
+     * @param index
+     * @return the address following the kept line at index
+     */
+    private int addressAfter(int index) {
+        DataItem item;
+        for (int i = index; i > 0; i--) {
+            item = this.assembled.get(i).getItem();
+            if (item != null) {
+                return item.getAddress() + item.getCommandLength();
+            }
+        }
+        return this.startAddress;
+    }
+    
+    /**
+     * Encodes every kept line that isStale()
+     * @param changedLabels labels added or removed since the last encoding
+     */
+    private void encodeAssembled(Set<String> changedLabels) {
+        int index;
+        int baseAddress = -1;
+        int nextBase;
+        AssembledLine line;
+        DataItem item;
+        EncodedChunk encoded;
+        for (int i = 1; i < this.assembled.size(); i++) {
+            line = this.assembled.get(i);
+            item = line.getItem();
+            if (item == null || !isStale(line, baseAddress, changedLabels)) {
+                continue;
+            }
+            encoded = new EncodedChunk(0, 1, baseAddress);
+            nextBase = baseAddress;
+            try {
+                nextBase = encodeLine(item, line.getSourceLine(), baseAddress, encoded, 0, this.symbols, this.opcodes);
+            }
+            catch (Exception e) {
+                encoded.setFailure(0, e);
+            }
+            index = this.symbols.searchForData(item.getOperand());
+            line.setEncoding(encoded, (index >= 0) ? this.symbols.getData(index) : null, baseAddress);
+            baseAddress = nextBase;
+            this.encodedCount++;
+        }
     }
     
-    private OPHashTable buildOPTable(int size, String opCodeListFilename) throws FileNotFoundException {
-        OPHashTable table = new OPHashTable(size);
+    /**
+     * Whether a kept line's code could be different now. WORD, BYTE and
+     * format 2 code only depends on the line itself; format 3 depends on
+     * where the operand is from the line (or from the base, when it was
+     * base relative) and the rest on the line's own address. BASE lines
+     * are always redone so the base in effect is known.
+     * @param line
+     * @param baseAddress the BASE value in effect at the line
+     * @param changedLabels
+     * @return true if the line needs encoding again
+     */
+    private boolean isStale(AssembledLine line, int baseAddress, Set<String> changedLabels) {
+        int target;
+        DataItem item = line.getItem();
+        if (!line.isEncoded() || line.getFailure() != null || "BASE".equals(item.getMneumonic())
+                || changedLabels.contains(item.getOperand())) {
+            return true;
+        }
+        if (line.getFormat() == 0 || line.getFormat() == 2) {
+            return false;
+        }
+        if (line.getFormat() == 3) {
+            target = line.getTarget().getAddress();
+            if (target - item.getAddress() != line.getTargetAddress() - line.getAddress()) {
+                return true;
+            }
+            return (line.getCode() & (PC_RELATIVE << 12)) == 0
+                    && (target != line.getTargetAddress() || baseAddress != line.getBaseAddress());
+        }
+        return item.getAddress() != line.getAddress();
+    }
+    
+    /**
+     * Writes the .lst and .obj files from the kept lines, the same as
+     * pass two would
+     * @throws Exception the failure of the first line that couldn't be encoded
+     */
+    private void writeAssembled() throws Exception {
+        int index;
+        String temp;
+        AssembledLine line;
+        DataItem item;
+        StringBuilder textRecord = this.codeBuffer;
+        TextRecordBuilder textRecords = new TextRecordBuilder(this.objectChannel);
+        
+        if (this.assembled.isEmpty()) {
+            return;
+        }
+        line = this.assembled.get(0);
+        textRecord.setLength(0);
+        writeListing(textRecord, new IntermediateLine(this.startAddress, line.getSourceLine(), line.getItem()));
+        sourceLexer.scan(line.getSourceLine());
+        index = this.symbols.searchForData(sourceLexer.get(LineLexer.LABEL));
+        temp = (index >= 0) ? this.symbols.getData(index).getLabel() : "";
+        writeToFile(String.format("H %6s %08X %08d", temp, this.startAddress, addressAfter(this.assembled.size() - 1) - this.startAddress), this.objectChannel);
+        
+        for (int i = 1; i < this.assembled.size(); i++) {
+            line = this.assembled.get(i);
+            item = line.getItem();
+            if (item == null) {
+                writeToFile(line.getSourceLine(), this.listChannel);
+                continue;
+            }
+            if (line.getFailure() != null) {
+                this.stats.addError();
+                throw line.getFailure();
+            }
+            noteErrors(item, line.getSourceLine(), line.getMessages());
+            if (line.getMessages() != null) {
+                writeToFile(line.getMessages(), this.listChannel);
+            }
+            textRecord.setLength(0);
+            if (line.getDigits() > 0) {
+                HexEncoder.append(textRecord, line.getCode(), line.getDigits());
+            }
+            writeListing(textRecord, new IntermediateLine(item.getAddress(), line.getSourceLine(), item));
+            textRecords.add(item.getAddress(), textRecord);
+            if ("END".equals(item.getMneumonic())) {
+                textRecords.flush();
+                writeToFile("E 000000", this.objectChannel);
+                return;
+            }
+            if (!isNullOrEmpty(item.getError())) {
+                writeToFile(".----- ERROR:" + item.getError() + "-----", this.listChannel);
+            }
+        }
+        textRecords.flush();
+    }
+    
+    /**
+     * The name the output files are given, the source name without its extension
+     * @param file
+     * @return String
+     */
+    public static String getBaseName(File file) {
+        int index = file.getName().lastIndexOf(".");
+        if (index <= 0) {
+            return file.getName();
+        }
+        return file.getName().substring(0, index);
+    }
+    
+    /**
+     * The opcode table asked for by the options, the built in one unless
+     * an opcode list file was given
+     * @param options
+     * @return OPTable
+     * @throws IOException
+     */
+    public static OPTable loadOPTable(AssemblerOptions options) throws IOException {
+        if (options.getOpcodeList() != null) {
+            return buildOPTable(options.getOpcodeList());
+        }
+        return OPCodeDictionary.INSTANCE;
+    }
+        
+    private static OPHashTable buildOPTable(String opCodeListFilename) throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        OPHashTable table;
         File file = new File(opCodeListFilename);
-        Scanner fileScanner = new Scanner(file);
+        LineReader reader = new LineReader(file, LineReader.DEFAULT_BUFFER_SIZE, false);
 
-        while (fileScanner.hasNext()) {
-            StringTokenizer tokenMaker = new StringTokenizer(fileScanner.nextLine());
+        // Read the list once and size the table from it
+        try {
+            while (reader.next()) {
+                lines.add(reader.lineString());
+            }
+        }
+        finally {
+            reader.close();
+        }
+        table = new OPHashTable(lines.size());
+        // Kept with the table for --stats
+        table.setInsertStats(new ProbeStats());
+        for (String line : lines) {
+            StringTokenizer tokenMaker = new StringTokenizer(line);
             if (tokenMaker.countTokens() == 4) {
                 // OPCODE
                 table.insertData(new OPCode(tokenMaker.nextToken(),tokenMaker.nextToken(), Integer.parseInt(tokenMaker.nextToken()), tokenMaker.nextToken()));
@@ -96,33 +933,85 @@ public class SicAssembler {
         return table;
     }   
 
-    private int passOneAssemble(File file, HashTable symbols, OPHashTable opcodes) throws FileNotFoundException {
+    /**
+     * Reads the source into memory, the intermediate lines keep the text
+     * anyway. Blank lines after the first are never used so are left out.
+     * @return the source lines
+     * @throws IOException
+     */
+    private List<String> readSourceLines() throws IOException {
+        int count = 0;
+        List<String> lines = new ArrayList<String>();
+        LineReader reader = openSource();
+        try {
+            while (reader.next()) {
+                count++;
+                if (lines.isEmpty() || reader.line().length() > 0) {
+                    lines.add(reader.lineString());
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        this.stats.addLines(count);
+        this.stats.addBytesRead(reader.getBytesRead());
+        return lines;
+    }
+    
+    /**
+     * Reads the first line into the symbol table if it is a START
+     * @param programLine
+     * @param symbols
+     * @param opcodes
+     * @return the START line, or null when the program doesn't have one
+     */
+    private DataItem readStartLine(String programLine, HashTable symbols, OPTable opcodes) {
+        DataItem item = null;
+        sourceLexer.scan(programLine);
+        if ("START".equalsIgnoreCase(sourceLexer.get(LineLexer.MNEMONIC)) && sourceLexer.has(LineLexer.OPERAND)) {
+            // Because it's the first line, I don't care
+            item = buildCommand(programLine, opcodes);
+            symbols.insertData(item);
+        }
+        return item;
+    }
+    
+    /**
+     * Gives every line an address and puts the labels in the symbol table
+     * @param lines the source, from readSourceLines()
+     * @param symbols
+     * @param opcodes
+     * @return the program length
+     */
+    private int passOneAssemble(List<String> lines, HashTable symbols, OPTable opcodes) {
         int initialAddress;
         int address;
         String temp;
         DataItem item;
         String programLine;
-        Scanner programScanner = new Scanner(file);
         
-        //Read First line
-        programLine = programScanner.nextLine();
-        if ("START".equals(programLine.substring(10, 16).trim().toUpperCase())) {
-            address = Integer.parseInt(programLine.substring(19, 28).trim(), 16);
-            // Because it's the first line, I don't care
-            symbols.insertData(buildCommand(programLine, opcodes));
-        }
-        else {
-            address = 0;
+        if (lines.isEmpty()) {
+            return 0;
         }
+        
+        //Read First line
+        programLine = lines.get(0);
+        item = readStartLine(programLine, symbols, opcodes);
+        address = (item != null) ? Integer.parseInt(item.getOperand(), 16) : 0;
         initialAddress = address;
-        writeToFile(String.format("%6s %s", Integer.toHexString(address).toUpperCase(), programLine), this.intermediateFile);
-        while ((programLine = programScanner.nextLine()) != null) {
+        intermediate.add(new IntermediateLine(address, programLine, item));
+        if (!options.isSequential() && lines.size() > PARALLEL_THRESHOLD) {
+            return passOneParallel(lines, address, item, symbols, opcodes) - initialAddress;
+        }
+        for (int lineNumber = 1; lineNumber < lines.size(); lineNumber++) {
+            programLine = lines.get(lineNumber);
             if (isNullOrEmpty(programLine)) {
                         continue;
             }
             else if (programLine.charAt(0) == '.') {
                 // Comment Line
-                writeToFile(programLine, this.intermediateFile);
+                intermediate.add(new IntermediateLine(programLine));
             }
             else {
                 item = buildCommand(programLine, opcodes);
@@ -131,426 +1020,852 @@ public class SicAssembler {
                     item.addError(temp);
                 }
                 if ("END".equals(item.getMneumonic())) {
+                    intermediate.add(new IntermediateLine(address, programLine, item));
                     break;
                 }
                 if (item.getOperandFlag() == '=') {
                     // It's a operand is a literal
                     literals.add(item.getOperand());
                 }
-                writeToFile(String.format("%6s %s", Integer.toHexString(address).toUpperCase(), programLine), this.intermediateFile);
+                intermediate.add(new IntermediateLine(address, programLine, item));
                 if (!isNullOrEmpty(item.getError())) {
-                    writeToFile(".----- ERROR:" + item.getError() + "-----", this.intermediateFile);
+                    intermediate.add(new IntermediateLine(".----- ERROR:" + item.getError() + "-----"));
+                }
+                address += item.getCommandLength();
+                if ("LTORG".equals(item.getMneumonic())) {
+                    address = this.printLiterals(address);
+                }
+            }
+        }
+        
+        return address - initialAddress;
+    }// end passOneAssemble()
+    
+    /**
+     * Pass one for big programs, split into CHUNK_SIZE line chunks.
+     * 
+     * Every chunk is parsed and sized on its own (with its own lexer), the
+     * addresses then come from a parallel prefix sum of the line lengths.
+     * START can only be the first line and sets where the sum begins;
+     * LTORG adds nothing to it while printLiterals() places no literals,
+     * and there is no ORG, so a single sum covers the whole program. Labels
+     * go through a concurrent map that keeps the earliest line defining
+     * each one, so the same lines get "Duplicate Label" as in the
+     * sequential pass.
+     * @param lines the whole source, line 0 already handled
+     * @param startAddress address of line 1
+     * @param startItem the START line, or null
+     * @param symbols
+     * @param opcodes
+     * @return the address after the last line up to END
+     */
+    private int passOneParallel(final List<String> lines, final int startAddress, DataItem startItem, HashTable symbols, final OPTable opcodes) {
+        final int lineCount = lines.size();
+        final int chunkCount = (lineCount - 1 + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final DataItem[] items = new DataItem[lineCount];
+        final int[] offsets = new int[lineCount];
+        final int[] failedLines = new int[chunkCount];
+        final RuntimeException[] failures = new RuntimeException[chunkCount];
+        final ConcurrentHashMap<String, Integer> definitions = new ConcurrentHashMap<String, Integer>();
+        final List<List<IntermediateLine>> chunkLines = new ArrayList<List<IntermediateLine>>();
+        int endLine = lineCount - 1;
+        int failedLine = lineCount;
+        RuntimeException failure = null;
+        DataItem item;
+        
+        items[0] = startItem;
+        
+        // Parse and size; a chunk stops at its first bad line, which only
+        // matters if it turns out to come before END
+        Arrays.fill(failedLines, lineCount);
+        forEachChunk(chunkCount, true, chunk -> {
+            LineLexer lexer = LineLexer.forSource();
+            String line;
+            for (int i = 1 + chunk * CHUNK_SIZE; i < Math.min(1 + (chunk + 1) * CHUNK_SIZE, lineCount); i++) {
+                line = lines.get(i);
+                if (isNullOrEmpty(line) || line.charAt(0) == '.') {
+                    continue;
+                }
+                try {
+                    items[i] = buildCommand(line, opcodes, lexer);
+                }
+                catch (RuntimeException e) {
+                    failedLines[chunk] = i;
+                    failures[chunk] = e;
+                    return;
+                }
+                offsets[i] = items[i].getCommandLength();
+            }
+        });
+        for (int chunk = 0; chunk < chunkCount && failure == null; chunk++) {
+            failedLine = failedLines[chunk];
+            failure = failures[chunk];
+        }
+        for (int i = 1; i < Math.min(failedLine, lineCount); i++) {
+            if (items[i] != null && "END".equals(items[i].getMneumonic())) {
+                endLine = i;
+                break;
+            }
+        }
+        if (failure != null && failedLine <= endLine) {
+            throw failure;
+        }
+        
+        // offsets[i] becomes the length of lines 1..i, line i+1 starts there
+        final int lastLine = endLine;
+        Arrays.parallelPrefix(offsets, 0, lastLine + 1, (a, b) -> a + b);
+        
+        forEachChunk(chunkCount, true, chunk -> {
+            DataItem lineItem;
+            for (int i = chunk * CHUNK_SIZE; i < Math.min(1 + (chunk + 1) * CHUNK_SIZE, lastLine + 1); i++) {
+                lineItem = items[i];
+                if (lineItem != null && !isNullOrEmpty(lineItem.getLabel())) {
+                    definitions.merge(lineItem.getLabel(), i, Math::min);
+                }
+            }
+        });
+        
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            chunkLines.add(new ArrayList<IntermediateLine>());
+        }
+        forEachChunk(chunkCount, true, chunk -> {
+            List<IntermediateLine> out = chunkLines.get(chunk);
+            DataItem lineItem;
+            String line;
+            int address;
+            for (int i = 1 + chunk * CHUNK_SIZE; i < Math.min(1 + (chunk + 1) * CHUNK_SIZE, lastLine + 1); i++) {
+                line = lines.get(i);
+                lineItem = items[i];
+                if (lineItem == null) {
+                    if (!isNullOrEmpty(line)) {
+                        // Comment Line
+                        out.add(new IntermediateLine(line));
+                    }
+                    continue;
+                }
+                address = startAddress + offsets[i - 1];
+                lineItem.setAddress(address);
+                if (!isNullOrEmpty(lineItem.getLabel()) && definitions.get(lineItem.getLabel()) != i) {
+                    lineItem.addError("Duplicate Label");
+                }
+                out.add(new IntermediateLine(address, line, lineItem));
+                if (!"END".equals(lineItem.getMneumonic()) && !isNullOrEmpty(lineItem.getError())) {
+                    out.add(new IntermediateLine(".----- ERROR:" + lineItem.getError() + "-----"));
+                }
+            }
+        });
+        
+        for (List<IntermediateLine> out : chunkLines) {
+            intermediate.addAll(out);
+        }
+        // The symbol table itself isn't thread safe, but every label in it
+        // is known to be unique by now
+        for (int i = 1; i <= lastLine; i++) {
+            item = items[i];
+            if (item == null) {
+                continue;
+            }
+            if (!isNullOrEmpty(item.getLabel()) && definitions.get(item.getLabel()) == i) {
+                symbols.insertData(item);
+            }
+            if (!"END".equals(item.getMneumonic()) && item.getOperandFlag() == '=') {
+                literals.add(item.getOperand());
+            }
+        }
+        
+        return startAddress + offsets[lastLine];
+    }// end passOneParallel()
+    
+    /**
+     * Runs work for chunks 0 to chunkCount - 1, on the common fork join
+     * pool when parallel is set
+     * @param chunkCount
+     * @param parallel
+     * @param work
+     */
+    private void forEachChunk(int chunkCount, boolean parallel, IntConsumer work) {
+        if (parallel) {
+            IntStream.range(0, chunkCount).parallel().forEach(work);
+        }
+        else {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                work.accept(chunk);
+            }
+        }
+    }
+    
+    /**
+     * Assembles the program in one pass (load and go), writing out every
+     * line as soon as it has been read.
+     * 
+     * An instruction whose operand isn't defined yet is written with no
+     * displacement and chained onto that symbol as a FixUp; once the symbol
+     * is defined the chain is worked through and the finished code is
+     * patched in. The listing can't be patched like that, so from the first
+     * line still waiting on a fix-up its lines are held back as HeldLines
+     * and written once the fix-up is worked out. The same happens when the displacement needs a BASE
+     * symbol that isn't defined yet. Format 2 and 4 instructions don't take
+     * anything from their operand's address here, so they only have to see
+     * it defined. The header is written with no program length and filled
+     * in at the end. There is no intermediate file.
+     * @param symbols
+     * @param opcodes
+     * @throws Exception
+     */
+    private void onePassAssemble(HashTable symbols, OPTable opcodes) throws Exception {
+        int index;
+        int address;
+        int initialAddress;
+        int baseAddress = -1;
+        boolean ended = false;
+        String temp;
+        String header;
+        String programLine;
+        String baseSymbol = null;
+        String messages;
+        DataItem item;
+        IntermediateLine line;
+        EncodedChunk encoded;
+        OPCode opcode;
+        FixUp fixUp;
+        FixUp waiting;
+        FixUp unresolved = null;
+        HeldLine held;
+        List<HeldLine> lines;
+        Deque<HeldLine> listing = new ArrayDeque<HeldLine>();
+        Map<String, FixUp> chains = new HashMap<String, FixUp>();
+        Map<String, List<HeldLine>> baseLines = new HashMap<String, List<HeldLine>>();
+        StringBuilder textRecord = this.codeBuffer;
+        TextRecordBuilder textRecords = new TextRecordBuilder(this.objectChannel);
+        LineReader reader = openSource();
+        
+        try {
+            if (!reader.next()) {
+                return;
+            }
+            this.stats.addLines(1);
+            //Read First line
+            programLine = reader.lineString();
+            item = readStartLine(programLine, symbols, opcodes);
+            address = (item != null) ? Integer.parseInt(item.getOperand(), 16) : 0;
+            initialAddress = address;
+            textRecord.setLength(0);
+            writeListing(textRecord, new IntermediateLine(address, programLine, item));
+            temp = (item != null && symbols.searchForData(item.getLabel()) >= 0) ? item.getLabel() : "";
+            header = String.format("H %6s %08X %08d", temp, address, 0);
+            writeToFile(header, this.objectChannel);
+            
+            while (!ended && reader.next()) {
+                this.stats.addLines(1);
+                if (reader.line().length() == 0) {
+                    continue;
+                }
+                programLine = reader.lineString();
+                if (programLine.charAt(0) == '.') {
+                    // Comment Line
+                    listing.add(new HeldLine(programLine));
+                    releaseListing(listing);
+                    continue;
+                }
+                item = buildCommand(programLine, opcodes);
+                item.setAddress(address);
+                encoded = new EncodedChunk(0, 1, baseAddress);
+                fixUp = null;
+                waiting = null;
+                if (!isNullOrEmpty(temp = symbols.insertData(item))) {
+                    item.addError(temp);
+                }
+                else if (!isNullOrEmpty(item.getLabel())) {
+                    if (item.getLabel().equals(baseSymbol)) {
+                        baseAddress = address;
+                        baseSymbol = null;
+                    }
+                    resolveChain(item.getLabel(), address, chains, textRecords, symbols, opcodes);
+                    if ((lines = baseLines.remove(item.getLabel())) != null) {
+                        for (HeldLine baseLine : lines) {
+                            baseLine.setWaiting(false);
+                        }
+                    }
+                }
+                
+                index = opcodes.searchForData(item.getMneumonic());
+                if (index >= 0) {
+                    opcode = opcodes.getOPCode(index);
+                    index = symbols.searchForData(item.getOperand());
+                    if (index >= 0 && baseSymbol == null) {
+                        encodeLine(item, programLine, baseAddress, encoded, 0, symbols, opcodes);
+                    }
+                    else {
+                        // Written with no displacement until it can be worked out
+                        fixUp = new FixUp(item, opcode, programLine, baseSymbol, baseAddress);
+                        waiting = fixUp;
+                        encodeInstruction(fixUp.getOpcode(), item, programLine, 0, encoded, 0, opcodes);
+                        if (index >= 0) {
+                            fixUp.setTarget(symbols.getData(index).getAddress());
+                        }
+                        else {
+                            chain(chains, item.getOperand(), fixUp);
+                            fixUp = null;
+                        }
+                    }
+                }
+                else if ("BASE".equals(item.getMneumonic()) && symbols.searchForData(item.getOperand()) < 0) {
+                    // Not defined yet, instructions that need it wait for it
+                    baseSymbol = item.getOperand();
+                }
+                else {
+                    baseAddress = encodeLine(item, programLine, baseAddress, encoded, 0, symbols, opcodes);
+                    if ("BASE".equals(item.getMneumonic())) {
+                        baseSymbol = null;
+                    }
+                }
+                
+                messages = encoded.getMessages(0);
+                textRecord.setLength(0);
+                if (encoded.getDigits(0) > 0) {
+                    HexEncoder.append(textRecord, encoded.getCode(0), encoded.getDigits(0));
+                }
+                line = new IntermediateLine(address, programLine, item);
+                held = new HeldLine(line, encoded.getCode(0), encoded.getDigits(0), messages);
+                listing.add(held);
+                textRecords.add(address, textRecord);
+                if (waiting != null) {
+                    waiting.setListing(held);
+                    held.setWaiting(true);
+                }
+                else if ("BASE".equals(item.getMneumonic()) && item.getOperand().equals(baseSymbol)) {
+                    // Held until the symbol turns up, or for its error at the end
+                    if ((lines = baseLines.get(baseSymbol)) == null) {
+                        baseLines.put(baseSymbol, lines = new ArrayList<HeldLine>());
+                    }
+                    lines.add(held);
+                    held.setWaiting(true);
+                }
+                if (fixUp != null) {
+                    resolveFixUp(fixUp, false, chains, textRecords, symbols, opcodes);
+                }
+                if ("END".equals(item.getMneumonic())) {
+                    ended = true;
+                }
+                else {
+                    if (!isNullOrEmpty(item.getError())) {
+                        listing.add(new HeldLine(".----- ERROR:" + item.getError() + "-----"));
+                    }
+                    address += item.getCommandLength();
+                    if ("LTORG".equals(item.getMneumonic())) {
+                        address = this.printLiterals(address);
+                    }
+                }
+                releaseListing(listing);
+            }
+        }
+        finally {
+            this.stats.addBytesRead(reader.getBytesRead());
+            reader.close();
+        }
+        
+        // Whatever is still waiting either needs a BASE symbol that never
+        // turned up, so it uses the base from before, or has an operand
+        // that was never defined, which stops the assembly like pass two
+        for (List<HeldLine> undefined : baseLines.values()) {
+            for (HeldLine baseLine : undefined) {
+                baseLine.addMessages("---Error: Unknown Symbol used for BASE ---");
+                baseLine.setWaiting(false);
+            }
+        }
+        for (Map.Entry<String, FixUp> entry : chains.entrySet()) {
+            for (fixUp = entry.getValue(); fixUp != null; fixUp = fixUp.getNext()) {
+                if (fixUp.getTarget() >= 0) {
+                    resolveFixUp(fixUp, true, chains, textRecords, symbols, opcodes);
+                }
+                else if (unresolved == null || fixUp.getItem().getAddress() < unresolved.getItem().getAddress()) {
+                    unresolved = fixUp;
+                }
+            }
+        }
+        // The listing stops at the line that couldn't be assembled
+        releaseListing(listing);
+        if (unresolved != null) {
+            throw new Exception("Does is this operand a number? " + unresolved.getItem().getOperand());
+        }
+        
+        textRecords.flush();
+        if (ended) {
+            writeToFile("E 000000", this.objectChannel);
+        }
+        // Fill in the program length now that it is known
+        temp = String.format("%08d", address - initialAddress);
+        if (temp.length() == 8) {
+            this.objectChannel.patch(header.lastIndexOf(' ') + 1, temp);
+        }
+    }// end onePassAssemble()
+    
+    /**
+     * Adds a fix-up to the chain waiting on a symbol
+     * @param chains
+     * @param symbol
+     * @param fixUp
+     */
+    private void chain(Map<String, FixUp> chains, String symbol, FixUp fixUp) {
+        fixUp.setNext(chains.get(symbol));
+        chains.put(symbol, fixUp);
+    }
+    
+    /**
+     * Works through the fix-ups that were waiting on a symbol that has
+     * just been defined, in the order they were made
+     * @param symbol
+     * @param address the symbol's address
+     * @param chains
+     * @param textRecords
+     * @param symbols
+     * @param opcodes
+     * @throws IOException
+     */
+    private void resolveChain(String symbol, int address, Map<String, FixUp> chains, TextRecordBuilder textRecords, HashTable symbols, OPTable opcodes) throws IOException {
+        List<FixUp> waiting = new ArrayList<FixUp>();
+        for (FixUp fixUp = chains.remove(symbol); fixUp != null; fixUp = fixUp.getNext()) {
+            waiting.add(fixUp);
+        }
+        for (int i = waiting.size() - 1; i >= 0; i--) {
+            FixUp fixUp = waiting.get(i);
+            fixUp.setNext(null);
+            if (fixUp.getTarget() < 0) {
+                fixUp.setTarget(address);
+            }
+            resolveFixUp(fixUp, false, chains, textRecords, symbols, opcodes);
+        }
+    }
+    
+    /**
+     * Patches in the code of an instruction whose operand is now defined,
+     * or chains it onto the BASE symbol it still needs
+     * @param fixUp
+     * @param ending true at the end of the program, where the BASE from before is used instead
+     * @param chains
+     * @param textRecords
+     * @param symbols
+     * @param opcodes
+     * @throws IOException
+     */
+    private void resolveFixUp(FixUp fixUp, boolean ending, Map<String, FixUp> chains, TextRecordBuilder textRecords, HashTable symbols, OPTable opcodes) throws IOException {
+        int index;
+        int displacement;
+        int baseAddress = fixUp.getBaseAddress();
+        DataItem item = fixUp.getItem();
+        EncodedChunk encoded;
+        StringBuilder code;
+        
+        displacement = fixUp.getTarget() - (item.getAddress() + item.getCommandLength());
+        if ((displacement < -2048 || displacement > 2047) && fixUp.getBaseSymbol() != null && !ending) {
+            index = symbols.searchForData(fixUp.getBaseSymbol());
+            if (index < 0) {
+                chain(chains, fixUp.getBaseSymbol(), fixUp);
+                return;
+            }
+            baseAddress = symbols.getData(index).getAddress();
+        }
+        encoded = new EncodedChunk(0, 1, baseAddress);
+        displacement = relativeAddress(fixUp.getTarget(), item, baseAddress, encoded, 0);
+        if (fixUp.getOpcode().getFormat() == 3) {
+            encodeInstruction(fixUp.getOpcode(), item, fixUp.getSource(), displacement, encoded, 0, opcodes);
+            code = new StringBuilder(6);
+            HexEncoder.append(code, encoded.getCode(0), encoded.getDigits(0));
+            textRecords.patch(item.getAddress(), code);
+            fixUp.getListing().setCode(encoded.getCode(0), encoded.getDigits(0));
+        }
+        if (encoded.getMessages(0) != null) {
+            fixUp.getListing().addMessages(encoded.getMessages(0));
+        }
+        fixUp.getListing().setWaiting(false);
+    }
+    
+    /**
+     * Writes out the held listing lines up to the first one still waiting
+     * on a fix-up, noting their errors now that the fix-up's are known too
+     * @param listing
+     */
+    private void releaseListing(Deque<HeldLine> listing) {
+        HeldLine held;
+        StringBuilder code = this.codeBuffer;
+        while (!listing.isEmpty() && !listing.peekFirst().isWaiting()) {
+            held = listing.removeFirst();
+            if (held.getText() != null) {
+                writeToFile(held.getText(), this.listChannel);
+                continue;
+            }
+            noteErrors(held.getLine().getItem(), held.getLine().getSourceLine(), held.getMessages());
+            if (held.getMessages() != null) {
+                writeToFile(held.getMessages(), this.listChannel);
+            }
+            code.setLength(0);
+            if (held.getDigits() > 0) {
+                HexEncoder.append(code, held.getCode(), held.getDigits());
+            }
+            writeListing(code, held.getLine());
+        }
+    }
+    
+    /**
+     * Writes the intermediate lines out to the .imd file for debugging
+     */
+    private void writeIntermediate() {
+        for (IntermediateLine line : intermediate) {
+            writeToFile(line.toString(), this.intermediateChannel);
+        }
+    }
+    
+    private void passTwoAssemble(int programLength, HashTable symbols, OPTable opcodes) throws Exception {
+        int index;
+        int address;
+        int chunkCount;
+        int windowSize;
+        int[] chunkBases;
+        boolean parallel;
+        String temp;
+        DataItem dataItem;
+        IntermediateLine line;
+        StringBuilder textRecord = this.codeBuffer;
+        TextRecordBuilder textRecords = new TextRecordBuilder(this.objectChannel);
+        List<EncodedChunk> window = new ArrayList<EncodedChunk>();
+        
+        if (intermediate.isEmpty()) {
+            return;
+        }
+        //Pull first line
+        line = intermediate.get(0);
+        
+        //Get address
+        address = line.getAddress();
+        //Create Header record
+        textRecord.setLength(0);
+        writeListing(textRecord, line);
+        // Check if program has label
+        sourceLexer.scan(line.getSourceLine());
+        index = symbols.searchForData(sourceLexer.get(LineLexer.LABEL));
+        if (index >= 0) {
+            dataItem = symbols.getData(index);
+            temp = String.format("H %6s %08X %08d", dataItem.getLabel(), address, programLength);
+        }
+        else {
+            temp = String.format("H %6s %08X %08d", "", address, programLength);
+        }
+        writeToFile(temp, this.objectChannel);
+        
+        // Encode a window of chunks (in parallel for big programs), then
+        // write them out in order before moving on to the next window
+        chunkCount = (intermediate.size() - 1 + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunkBases = scanBaseAddresses(chunkCount, symbols);
+        parallel = !options.isSequential() && intermediate.size() > PARALLEL_THRESHOLD;
+        windowSize = parallel ? ForkJoinPool.commonPool().getParallelism() * 4 : 1;
+        for (int firstChunk = 0; firstChunk < chunkCount; firstChunk += windowSize) {
+            window.clear();
+            for (int chunk = firstChunk; chunk < Math.min(firstChunk + windowSize, chunkCount); chunk++) {
+                int first = 1 + chunk * CHUNK_SIZE;
+                window.add(new EncodedChunk(first, Math.min(CHUNK_SIZE, intermediate.size() - first), chunkBases[chunk]));
+            }
+            forEachChunk(window.size(), parallel, chunk -> encodeChunk(window.get(chunk), symbols, opcodes));
+            for (EncodedChunk encoded : window) {
+                if (writeChunk(encoded, textRecords)) {
+                    // Reached END
+                    return;
+                }
+            }
+        }
+        textRecords.flush();
+    }
+    
+    /**
+     * Works out the BASE value in effect at the start of every chunk; the
+     * symbol table is complete by now, so this only has to look at BASE lines
+     * @param chunkCount
+     * @param symbols
+     * @return int[] base address per chunk, -1 where none has been declared
+     */
+    private int[] scanBaseAddresses(int chunkCount, HashTable symbols) {
+        int[] bases = new int[chunkCount];
+        int baseAddress = -1;
+        int index;
+        DataItem dataItem;
+        for (int lineNumber = 1; lineNumber < intermediate.size(); lineNumber++) {
+            if ((lineNumber - 1) % CHUNK_SIZE == 0) {
+                bases[(lineNumber - 1) / CHUNK_SIZE] = baseAddress;
+            }
+            dataItem = intermediate.get(lineNumber).getItem();
+            if (dataItem != null && "BASE".equals(dataItem.getMneumonic())) {
+                index = symbols.searchForData(dataItem.getOperand());
+                if (index >= 0) {
+                    baseAddress = symbols.getData(index).getAddress();
+                }
+            }
+        }
+        return bases;
+    }
+    
+    /**
+     * Encodes every line of the chunk. Only reads the symbol and opcode
+     * tables and the intermediate lines, so chunks can run side by side.
+     * @param chunk
+     * @param symbols
+     * @param opcodes
+     */
+    private void encodeChunk(EncodedChunk chunk, HashTable symbols, OPTable opcodes) {
+        int baseAddress = chunk.getBaseAddress();
+        IntermediateLine line;
+        for (int slot = 0; slot < chunk.getSize(); slot++) {
+            line = intermediate.get(chunk.getFirst() + slot);
+            if (!line.isComment()) {
+                try {
+                    baseAddress = encodeLine(line.getItem(), line.getSourceLine(), baseAddress, chunk, slot, symbols, opcodes);
                 }
-                address += item.getCommandLength();
-                if ("LTORG".equals(item.getMneumonic())) {
-                    address = this.printLiterals(address);
+                catch (Exception e) {
+                    chunk.setFailure(slot, e);
                 }
             }
         }
-        writeToFile(String.format("%6s %s", Integer.toHexString(address).toUpperCase(), programLine), this.intermediateFile);
-        
-        return address - initialAddress;
-    }// end passOneAssemble()
+    }
     
-    private void passTwoAssemble(int programLength, HashTable symbols, OPHashTable opcodes) throws FileNotFoundException, Exception {
+    /**
+     * Works out the object code of one line. Package private for the
+     * benchmarks.
+     * @return the BASE value in effect after the line
+     */
+    int encodeLine(DataItem dataItem, String source, int baseAddress, EncodedChunk chunk, int slot, HashTable symbols, OPTable opcodes) throws Exception {
         int index;
-        int address;
-        int baseAddress = -1;
-        int displacement;
-        boolean isPC = true;
-        String textRecord;
-        String programLine;
+        int code;
+        int relative;
         String temp;
-        DataItem dataItem;
         OPCode opcode;
-        File file;
-        Scanner fileScanner;
-        StringTokenizer tokenMaker;
-        file = new File(this.intermediateFile);
         
-        try {
-            fileScanner = new Scanner(file);
-            //Pull first line
-            temp = fileScanner.nextLine();
-            tokenMaker = new StringTokenizer(temp);
-            
-            //Get address
-            address = Integer.parseInt(tokenMaker.nextToken().trim());
-            //Create Header record
-            writeToFile(String.format("%-8s %s", "", temp), this.listFile);
-            // Check if program has label
-            temp = tokenMaker.nextToken();
-            index = symbols.searchForData(temp);
+        //  Get OPcode
+        index = opcodes.searchForData(dataItem.getMneumonic());
+        
+        if (index >= 0) {
+            opcode = opcodes.getOPCode(index);
+
+            //  Get operand and Calculate displacement
+            index = symbols.searchForData(dataItem.getOperand());
             if (index >= 0) {
-                dataItem = symbols.getData(index);
-                textRecord = String.format("H %6s %08d %08d", dataItem.getLabel(), address, programLength);
+                relative = relativeAddress(symbols.getData(index).getAddress(), dataItem, baseAddress, chunk, slot);
             }
             else {
-                textRecord = String.format("H %6s %08d %08d", "", address, programLength);
-            }
-            writeToFile(textRecord, this.objectFile);
-            //Start loop
-            while (fileScanner.hasNextLine() && (programLine = fileScanner.nextLine()) != null) {
-                isPC = true;
-                displacement = 0;
-                textRecord = "";
-                tokenMaker = new StringTokenizer(programLine);
-                temp = tokenMaker.nextToken();
-                if (temp.charAt(0) == '.') {
-                    writeToFile(programLine, this.listFile);
-                    continue;
-                }
-                else {
-                    dataItem = buildItem(programLine, opcodes);
-                }
-                //  Get OPcode
-                index = opcodes.searchForData(dataItem.getMneumonic());
-                
-                if (index >= 0) {
-                    opcode = opcodes.getOPCode(index);
-
-                    //  Get operand and Calculate displacement
+                // Does the operand have an immediate addressing flag (is it a number?)
+                throw new Exception("Does is this operand a number? " + dataItem.getOperand());
+            }
+            encodeInstruction(opcode, dataItem, source, relative, chunk, slot, opcodes);
+        }
+        else {
+            // Do I have an assembler directive?
+            if (searchArray(this.assemblerDirectives, dataItem.getMneumonic())) {
+                // check if base
+                if (dataItem.getMneumonic().equalsIgnoreCase("BASE")) {
                     index = symbols.searchForData(dataItem.getOperand());
                     if (index >= 0) {
-                        displacement = symbols.getData(index).getAddress() - (dataItem.getAddress() + dataItem.getCommandLength());
-                        // Check for PC relative
-                        if (displacement < -2048 || displacement > 2047) {
-                            // outside pc range
-                            isPC = false;
-                            if (baseAddress >= 0) {
-                                displacement = symbols.getData(index).getAddress() - baseAddress;
-                            }
-                            else {
-                                writeToFile("---Error: No Base Declared ---", this.listFile);
-                                displacement = 0;
-                            }
-                        }
-                    }
-                    else {
-                        // Does the operand have an immediate addressing flag (is it a number?)
-                        throw new Exception("Does is this operand a number? " + dataItem.getOperand());
-                    }
-
-                    
-                    if (opcode.getFormat() == 2) {
-                        textRecord = opcode.getOpcode();
-                        index = programLine.indexOf(',');
-                        temp = Character.toString(programLine.charAt(index - 1));
-                        index = opcodes.searchForData(temp);
-                        if (index >= 0) {
-                            textRecord += opcodes.getOPCode(index).getOpcode();
-                            index = programLine.indexOf(',');
-                            temp = Character.toString(programLine.charAt(index + 1));
-                            index = opcodes.searchForData(temp);
-                            if (index > 0) {
-                                textRecord += opcodes.getOPCode(index).getOpcode();
-                            }
-                            else {
-                                writeToFile("---ERROR: Unknown Register ---", this.listFile);
-                            }
-                        }
-                        else {
-                            writeToFile("---ERROR: Unknown Register ---", this.listFile);
-                        }
-                    }
-                    else if (opcode.getFormat() == 3) {
-                        // Standard instruction
-                        if (opcode.getLabel().charAt(0) == '*') {
-                            textRecord = opcode.getOpcode();
-                        }
-                        else if (dataItem.getOperandFlag() == '#') {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 1);
-                        }
-                        else if (dataItem.getOperandFlag() == '@') {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 2);
-                        }
-                        else {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 3);
-                        }
-                        
-                        if (textRecord.length() < 2) {
-                            while (textRecord.length() < 2) {
-                                textRecord = "0" + textRecord;
-                            }
-                        }
-                        
-                        if (isPC) {
-                            if (isNullOrEmpty(dataItem.getIndexEntry())) {
-                                textRecord += Integer.toHexString(2);
-                            }
-                            else {
-                                textRecord += Integer.toHexString(10);
-                            }
-                        }
-                        else {
-                            if (isNullOrEmpty(dataItem.getIndexEntry())) {
-                                textRecord += Integer.toHexString(4);
-                            }
-                            else {
-                                textRecord += Integer.toHexString(12);
-                            }
-                        }
-                        
-                        temp = Integer.toHexString(displacement);
-                        if (temp.length() < 3) {
-                            while (temp.length() < 3) {
-                                temp = "0" + temp;
-                            }
-                        }
-                        else if (temp.length() > 3) {
-                            temp = temp.substring(temp.length() - 3);
-                        }
-                        textRecord += temp;
+                        baseAddress = symbols.getData(index).getAddress();
                     }
                     else {
-                        if (opcode.getLabel().charAt(0) == '*') {
-                            textRecord = opcode.getOpcode();
-                        }
-                        else if (dataItem.getOperandFlag() == '#') {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 1);
-                        }
-                        else if (dataItem.getOperandFlag() == '@') {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 2);
-                        }
-                        else {
-                            textRecord = Integer.toHexString(Integer.parseInt(opcode.getOpcode(), 16) + 3);
-                        }
-                        
-                        if (textRecord.length() < 2) {
-                            while (textRecord.length() < 2) {
-                                textRecord = "0" + textRecord;
-                            }
-                        }
-                        
-                        textRecord += Integer.toHexString(1);
-                        temp = Integer.toHexString(dataItem.getAddress());
-                        if (temp.length() < 5) {
-                            while (temp.length() < 5) {
-                                temp = "0" + temp;
-                            }
-                        }
-                        textRecord += temp;
-                    }// end if/else for opcode format
-                    
-                    // WRITE THE RECORD
-                    writeToFile(String.format("%-8s %s", textRecord, programLine), this.listFile);
-                    if (!isNullOrEmpty(textRecord)) {
-                        index = (textRecord.length() / 2);
-                        if (index == 0) {
-                            index = 1;
-                        }
-                        temp = Integer.toHexString(dataItem.getAddress());
-                        if (temp.length() < 6) {
-                            temp = "0" + temp;
-                        }
-                        writeToFile(String.format("T %s %1d %s", temp, index, textRecord), this.objectFile);
+                        chunk.addMessage(slot, "---Error: Unknown Symbol used for BASE ---");
                     }
                 }
+            }
+            else if ("WORD".equalsIgnoreCase(dataItem.getMneumonic())) {
+                if (dataItem.getOperand().contains("C")) {
+                    temp = dataItem.getOperand().substring(dataItem.getMneumonic().indexOf("\'") + 1, dataItem.getMneumonic().length() - 1);
+                    code = temp.isEmpty() ? 0 : temp.charAt(temp.length() - 1);
+                }
                 else {
-                    // Do I have an assembler directive?
-                    if (searchArray(this.assemblerDirectives, dataItem.getMneumonic())) {
-                        // check if base
-                        if (dataItem.getMneumonic().equalsIgnoreCase("BASE")) {
-                            index = symbols.searchForData(dataItem.getOperand());
-                            if (index >= 0) {
-                                baseAddress = symbols.getData(index).getAddress();
-                            }
-                            else {
-                                writeToFile("---Error: Unknown Symbol used for BASE ---", this.listFile);
-                            }
-                        }
-                        writeToFile(String.format("%-8s %s", textRecord, programLine), this.listFile);
-                        if (dataItem.getMneumonic().equalsIgnoreCase("END")) {
-                            writeToFile("E 000000", this.objectFile);
-                            break;
-                        }
-                        continue;
-                    }
-                    else if ("WORD".equalsIgnoreCase(dataItem.getMneumonic())) {
-                        if (dataItem.getOperand().contains("C")) {
-                            temp = dataItem.getOperand().substring(dataItem.getMneumonic().indexOf("\'") + 1, dataItem.getMneumonic().length() - 1);
-                            char[] array = temp.toCharArray();
-                            for(char a: array) {
-                                textRecord = Integer.toHexString((int) a);
-                            }
-                        }
-                        else {
-                            index = dataItem.getOperand().indexOf("\'");
-                            if (index >= 0) {
-                                temp = dataItem.getOperand().substring(index, dataItem.getOperand().length() - 1);
-                                textRecord = Integer.toHexString(Integer.parseInt(temp, 16));
-                            }
-                            else {
-                                textRecord = Integer.toHexString(Integer.parseInt(dataItem.getOperand(), 16));
-                            }
-                        }
-                        if (textRecord.length() < 6) {
-                            while (textRecord.length() < 6) {
-                                textRecord = "0" + textRecord;
-                            }
-                        }
-                    }
-                    else if ("BYTE".equalsIgnoreCase(dataItem.getMneumonic())) {
-                        textRecord = Integer.toHexString(Integer.parseInt(dataItem.getOperand(), 16));
-                        if (textRecord.length() < 6) {
-                            while (textRecord.length() < 6) {
-                                textRecord = "0" + textRecord;
-                            }
-                        }
+                    index = dataItem.getOperand().indexOf("\'");
+                    if (index >= 0) {
+                        temp = dataItem.getOperand().substring(index, dataItem.getOperand().length() - 1);
+                        code = Integer.parseInt(temp, 16);
                     }
-
-                    writeToFile(String.format("%-8s %s", textRecord, programLine), this.listFile);
-                    if (!isNullOrEmpty(textRecord)) {
-                        index = (textRecord.length() / 2);
-                        if (index == 0) {
-                            index = 1;
-                        }
-                        temp = Integer.toHexString(dataItem.getAddress());
-                        if (temp.length() < 6) {
-                            temp = "0" + temp;
-                        }
-                        writeToFile(String.format("T %s %01d %s", temp, index, textRecord), this.objectFile);
+                    else {
+                        code = Integer.parseInt(dataItem.getOperand(), 16);
                     }
                 }
-                
-            }// end while
-            fileScanner.close();
+                chunk.setCode(slot, code, Math.max(6, HexEncoder.length(code)));
+            }
+            else if ("BYTE".equalsIgnoreCase(dataItem.getMneumonic())) {
+                code = Integer.parseInt(dataItem.getOperand(), 16);
+                chunk.setCode(slot, code, Math.max(6, HexEncoder.length(code)));
+            }
         }
-        catch (FileNotFoundException ex) {
-            System.out.println("I don't know man, the file I made is gone.");
-        }   
-        Files.deleteIfExists(file.toPath());
+        return baseAddress;
     }
     
-    private DataItem buildCommand(String line, OPHashTable opTable) {
-        String temp;
-        String label = null;
-        String mneumonic = null;
-        String operand = null;
-        String comments = null;
-        String error = "";
-        String indexEntry = null;
+    /**
+     * Works out how a format 3 instruction reaches its target: PC relative
+     * when the displacement fits, otherwise from the base
+     * @param target address of the operand
+     * @param dataItem
+     * @param baseAddress the BASE value in effect, -1 for none
+     * @param chunk gets the message when there is no base to use
+     * @param slot
+     * @return the b and p bits (shifted up 12) and the 12 bit displacement
+     */
+    private int relativeAddress(int target, DataItem dataItem, int baseAddress, EncodedChunk chunk, int slot) {
+        int displacement = target - (dataItem.getAddress() + dataItem.getCommandLength());
+        // Check for PC relative
+        if (displacement >= -2048 && displacement <= 2047) {
+            return (PC_RELATIVE << 12) | (displacement & 0xFFF);
+        }
+        // outside pc range
+        if (baseAddress >= 0) {
+            displacement = target - baseAddress;
+        }
+        else {
+            chunk.addMessage(slot, "---Error: No Base Declared ---");
+            displacement = 0;
+        }
+        return (BASE_RELATIVE << 12) | (displacement & 0xFFF);
+    }
+    
+    /**
+     * Sets the object code of an instruction
+     * @param opcode
+     * @param dataItem
+     * @param source the source line, format 2 reads its registers from it
+     * @param relative from relativeAddress(), only used by format 3
+     * @param chunk
+     * @param slot
+     * @param opcodes
+     */
+    private void encodeInstruction(OPCode opcode, DataItem dataItem, String source, int relative, EncodedChunk chunk, int slot, OPTable opcodes) {
         int index;
-        int commandLength;
-        char operandFlag;
-        boolean extended;
-        DataItem item;
-        OPCode opc;
-        StringTokenizer tokenMaker = new StringTokenizer(line);
-        
-        while (tokenMaker.hasMoreTokens()) {
-            temp = tokenMaker.nextToken();
-            index = line.indexOf(temp);
-            if (index == 0 && index < 7) {
-                label = temp;
-            }
-            else if (7 <= index && index < 16) {
-                mneumonic = temp;
-            }
-            else if (16 <= index && index < 27) {
-                if (temp.charAt(0) == '#' || temp.charAt(0) == '@') {
-                    // Operand has a flag
-                    temp = temp.substring(1);
-                    if (temp.contains(",")) {
-                        index = temp.indexOf(",");
-                        operand = temp.substring(0, index);
-                        indexEntry = temp.substring(index + 1).trim();
-                    }
-                    else {
-                        operand = temp;
-                    }
-                }
-                else if (temp.charAt(0) == '=') {
-                    literals.add(temp);
-                    operand = temp;
+        int code;
+        int digits;
+        if (opcode.getFormat() == 2) {
+            code = opcode.getOpcodeValue();
+            digits = 2;
+            index = source.indexOf(',');
+            index = (index > 0) ? opcodes.searchForData(Character.toString(source.charAt(index - 1))) : -1;
+            if (index >= 0 && opcodes.getOPCode(index).getRegisterNumber() >= 0) {
+                code = (code << 4) | opcodes.getOPCode(index).getRegisterNumber();
+                digits = 3;
+                index = source.indexOf(',');
+                index = (index + 1 < source.length()) ? opcodes.searchForData(Character.toString(source.charAt(index + 1))) : -1;
+                if (index >= 0 && opcodes.getOPCode(index).getRegisterNumber() >= 0) {
+                    code = (code << 4) | opcodes.getOPCode(index).getRegisterNumber();
+                    digits = 4;
                 }
                 else {
-                    operand = temp;
+                    chunk.addMessage(slot, "---ERROR: Unknown Register ---");
                 }
             }
-            else if (27 <= index && index < line.length()) {
-                comments = temp;
-            }
             else {
-                error = temp + " not in extpected index range";
+                chunk.addMessage(slot, "---ERROR: Unknown Register ---");
             }
         }
-        
-        // Validate Strings
-        if (isNullOrEmpty(label)) {
-            error = " No Label Found ";
-        }
-        if (isNullOrEmpty(operand)) {
-            error += " No Operand ";
-        }
-
-        if (line.length() >= 10) {
-            extended = (line.charAt(9) == '+');
-        }
-        else {
-            extended = false;
-        }
-        if (line.length() >= 19) {
-            operandFlag = line.charAt(18);
+        else if (opcode.getFormat() == 3) {
+            // Standard instruction: op+ni | xbpe | 12 bit displacement
+            code = ((opcode.getOpcodeValue() + addressingBits(opcode, dataItem)) << 16) | relative;
+            if (!isNullOrEmpty(dataItem.getIndexEntry())) {
+                code |= INDEXED << 12;
+            }
+            digits = 6;
         }
         else {
-            operandFlag = ' ';
+            // Extended: op+ni | e | 20 bit address
+            code = ((opcode.getOpcodeValue() + addressingBits(opcode, dataItem)) << 24)
+                    | (EXTENDED << 20)
+                    | (dataItem.getAddress() & 0xFFFFF);
+            digits = 8;
+        }// end if/else for opcode format
+        chunk.setCode(slot, code, digits);
+    }
+    
+    /**
+     * Writes the listing lines and object code of an encoded chunk
+     * @param chunk
+     * @param textRecords
+     * @return true if the chunk held the END line
+     * @throws Exception the failure of the first line that couldn't be encoded
+     */
+    private boolean writeChunk(EncodedChunk chunk, TextRecordBuilder textRecords) throws Exception {
+        IntermediateLine line;
+        DataItem dataItem;
+        String messages;
+        StringBuilder textRecord = this.codeBuffer;
+        for (int slot = 0; slot < chunk.getSize(); slot++) {
+            line = intermediate.get(chunk.getFirst() + slot);
+            if (line.isComment()) {
+                writeToFile(line.getSourceLine(), this.listChannel);
+                continue;
+            }
+            if (chunk.getFailure(slot) != null) {
+                this.stats.addError();
+                throw chunk.getFailure(slot);
+            }
+            dataItem = line.getItem();
+            messages = chunk.getMessages(slot);
+            noteErrors(dataItem, line.getSourceLine(), messages);
+            if (messages != null) {
+                writeToFile(messages, this.listChannel);
+            }
+            textRecord.setLength(0);
+            if (chunk.getDigits(slot) > 0) {
+                HexEncoder.append(textRecord, chunk.getCode(slot), chunk.getDigits(slot));
+            }
+            writeListing(textRecord, line);
+            textRecords.add(dataItem.getAddress(), textRecord);
+            if ("END".equals(dataItem.getMneumonic())) {
+                textRecords.flush();
+                writeToFile("E 000000", this.objectChannel);
+                return true;
+            }
         }
-
-        item = new DataItem(label, extended, mneumonic, operandFlag, operand, comments);
-        
-        if (isNullOrEmpty(mneumonic)) {
-            error += " Invalid mneomonic ";
-            commandLength = 0;
+        return false;
+    }
+    
+    /**
+     * Writes a listing line: the object code padded to 8 columns, then
+     * the line as it appears in the intermediate file
+     * @param textRecord
+     * @param line
+     */
+    private void writeListing(StringBuilder textRecord, IntermediateLine line) {
+        StringBuilder buffer = this.lineBuffer;
+        if (this.listChannel == null) {
+            return;
         }
-        else {
-            index = opTable.searchForData(mneumonic);
-            if (index == -1) {
-                // It's not an opcode
-                // Do stuff for assembler directives and reserved words
-                if (searchArray(this.assemblerDirectives, mneumonic)) {
-                    // ASSEMBLER DIRECTIVE
-                    commandLength = 0;
-                }
-                else if ("RESW".equalsIgnoreCase(mneumonic)){
-                    commandLength = 3 * Integer.parseInt(operand);
-                }
-                else if ("RESB".equalsIgnoreCase(mneumonic)){
-                    commandLength = Integer.parseInt(operand);
-                }
-                else if ("WORD".equalsIgnoreCase(mneumonic)) {
-                    commandLength = 3;
-                }
-                else if ("BYTE".equalsIgnoreCase(mneumonic)) {
-                    commandLength = Integer.toHexString((Integer.parseInt(operand))).length();
-                }
-                else {
-                    error += " Invalid Mneumonic ";
-                    commandLength = 0;
+        if (this.listChannel instanceof ListingTable) {
+            try {
+                if (((ListingTable) this.listChannel).println(textRecord, line.isComment() ? -1 : line.getAddress(), line.getSourceLine())) {
+                    return;
                 }
             }
-            else {
-                // Calculate the commandLength
-                opc = opTable.getOPCode(index);
-                commandLength = opc.getFormat();
+            catch (IOException ex) {
+                this.writeFailed(ex);
+                return;
             }
         }
-        // Set commandLength
-        item.setCommandLength(commandLength);
-        
-        
-        if (!isNullOrEmpty(indexEntry)) {
-            item.setIndexEntry(indexEntry);
+        buffer.setLength(0);
+        buffer.append(textRecord);
+        while (buffer.length() < 8) {
+            buffer.append(' ');
         }
-
-        if (!isNullOrEmpty(error)) {
-            item.setError(error);
+        buffer.append(' ');
+        if (!line.isComment()) {
+            HexEncoder.appendRight(buffer, line.getAddress(), 6);
+            buffer.append(' ');
         }
-        return item;
+        buffer.append(line.getSourceLine());
+        writeToFile(buffer, this.listChannel);
     }
     
-    private DataItem buildItem(String line, OPHashTable opTable) {
-        String temp;
+    private DataItem buildCommand(String line, OPTable opTable) {
+        return buildCommand(line, opTable, this.sourceLexer);
+    }
+    
+    /**
+     * Parses a source line with the given lexer, so lines can be parsed
+     * on several threads at once. Package private for the benchmarks.
+     * @param line
+     * @param opTable
+     * @param lexer
+     * @return DataItem
+     */
+    DataItem buildCommand(String line, OPTable opTable, LineLexer lexer) {
         String label = null;
         String mneumonic = null;
         String operand = null;
@@ -559,61 +1874,34 @@ public class SicAssembler {
         String indexEntry = null;
         int index;
         int commandLength;
-        int address = 0;
         char operandFlag;
         boolean extended;
-        boolean addressFound = false;
         DataItem item;
         OPCode opc;
-        StringTokenizer tokenMaker = new StringTokenizer(line);
         
-        while (tokenMaker.hasMoreTokens()) {
-            
-            temp = tokenMaker.nextToken();
-            if (addressFound) {
-                index = line.indexOf(temp, 7);
+        lexer.scan(line);
+        label = lexer.get(LineLexer.LABEL);
+        mneumonic = lexer.get(LineLexer.MNEMONIC);
+        comments = lexer.get(LineLexer.COMMENT);
+        operandFlag = lexer.first(LineLexer.OPERAND);
+        if (operandFlag == '#' || operandFlag == '@') {
+            // Operand has a flag
+            index = lexer.indexOf(LineLexer.OPERAND, ',');
+            if (index >= 0) {
+                operand = lexer.slice(lexer.start(LineLexer.OPERAND) + 1, index);
+                indexEntry = lexer.slice(index + 1, lexer.end(LineLexer.OPERAND)).trim();
             }
             else {
-                index = line.indexOf(temp);
-            }
-            if (index >= 0 && index < 7) {
-                address = Integer.parseInt(temp, 16);
-                addressFound = true;
-            }
-            else if (index >= 7 && index < 14) {
-                label = temp;
-            }
-            else if (14 <= index && index < 23) {
-                mneumonic = temp;
-            }
-            else if (23 <= index && index < 34) {
-                if (temp.charAt(0) == '#' || temp.charAt(0) == '@') {
-                    // Operand has a flag
-                    temp = temp.substring(1);
-                    if (temp.contains(",")) {
-                        index = temp.indexOf(",");
-                        operand = temp.substring(0, index);
-                        indexEntry = temp.substring(index + 1).trim();
-                    }
-                    else {
-                        operand = temp;
-                    }
-                }
-                else if (temp.charAt(0) == '=') {
-                    literals.add(temp);
-                    operand = temp;
-                }
-                else {
-                    operand = temp;
-                }
+                operand = lexer.slice(lexer.start(LineLexer.OPERAND) + 1, lexer.end(LineLexer.OPERAND));
             }
-            else if (34 <= index && index < line.length()) {
-                comments = temp;
-            }
-            else {
-                error = temp + " not in extpected index range";
+        }
+        else {
+            operand = lexer.get(LineLexer.OPERAND);
+            if (operandFlag != '=') {
+                operandFlag = ' ';
             }
         }
+        extended = (lexer.first(LineLexer.MNEMONIC) == '+');
         
         // Validate Strings
         if (isNullOrEmpty(label)) {
@@ -623,22 +1911,7 @@ public class SicAssembler {
             error += " No Operand ";
         }
 
-        if (line.length() >= 17) {
-            extended = (line.charAt(16) == '+');
-        }
-        else {
-            extended = false;
-        }
-        if (line.length() >= 26) {
-            operandFlag = line.charAt(25);
-        }
-        else {
-            operandFlag = ' ';
-        }
-
         item = new DataItem(label, extended, mneumonic, operandFlag, operand, comments);
-        item.setAddress(address);
-        
         
         if (isNullOrEmpty(mneumonic)) {
             error += " Invalid mneomonic ";
@@ -690,6 +1963,26 @@ public class SicAssembler {
         return item;
     }
     
+    /**
+     * The n and i bits added to the opcode byte of a format 3/4 instruction
+     * @param opcode
+     * @param item
+     * @return int
+     */
+    private int addressingBits(OPCode opcode, DataItem item) {
+        if (opcode.isSicOnly()) {
+            return 0;
+        }
+        else if (item.getOperandFlag() == '#') {
+            return 1;
+        }
+        else if (item.getOperandFlag() == '@') {
+            return 2;
+        }
+        else {
+            return 3;
+        }
+    }
     
     private boolean isNullOrEmpty(String str) {
         boolean a = false;
@@ -731,20 +2024,119 @@ public class SicAssembler {
     /**
      * Outputs the message to the Output file
      * @param message 
-     * @param filename 
-     */
-    public void writeToFile(String message, String filename) {
-        try (   
-                FileWriter fileWriter = new FileWriter(filename, true);
-                BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
-                PrintWriter outputWriter = new PrintWriter(bufferedWriter);
-            ) {
-            outputWriter.println(message); 
+     * @param channel 
+     */
+    public void writeToFile(CharSequence message, OutputChannel channel) {
+        if (channel == null) {
+            // Output that isn't wanted, a listing when streaming
+            return;
+        }
+        try {
+            channel.println(message);
             //System.out.println(message);
         }
         catch (IOException ex) {
-            System.out.printf("%s%n", ex.getMessage());
+            this.writeFailed(ex);
+        }
+    }
+    
+    /**
+     * Keeps the first output error, which fails the run, and prints it;
+     * the writes after it are likely to fail the same way and aren't
+     * printed
+     * @param ex
+     */
+    private void writeFailed(IOException ex) {
+        if (this.writeError == null) {
+            this.writeError = ex;
+            messages().printf("%s%n", ex.getMessage());
+        }
+    }
+    
+    /**
+     * Flushes and closes every output file that was opened
+     */
+    private void closeChannels() {
+        OutputChannel[] channels = {this.intermediateChannel, this.listChannel, this.objectChannel};
+        this.stats.startPhase("close");
+        for (OutputChannel channel : channels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException ex) {
+                    this.writeFailed(ex);
+                }
+                this.stats.addBytesWritten(channel.getBytesWritten());
+            }
+        }
+        if (this.asyncOutput != null) {
+            try {
+                this.asyncOutput.close();
+            }
+            catch (IOException ex) {
+                this.writeFailed(ex);
+            }
+            this.asyncOutput = null;
+        }
+        if (this.heldObject != null) {
+            try {
+                this.objectStream.write(this.heldObject.toString().getBytes());
+                this.objectStream.flush();
+            }
+            catch (IOException ex) {
+                this.writeFailed(ex);
+            }
+            this.heldObject = null;
+        }
+        this.intermediateChannel = null;
+        this.listChannel = null;
+        this.objectChannel = null;
+        this.stats.endPhase();
+    }
+    
+    /**
+     * Counts the line in the stats and adds a Diagnostic for each of its
+     * errors. END never has its errors listed.
+     * @param item
+     * @param sourceLine
+     * @param messages from encoding the line, or null
+     */
+    private void noteErrors(DataItem item, String sourceLine, String messages) {
+        boolean listed = !isNullOrEmpty(item.getError()) && !"END".equals(item.getMneumonic());
+        if (messages == null && !listed) {
+            return;
+        }
+        this.stats.addError();
+        if (messages != null) {
+            for (String message : messages.split(System.lineSeparator())) {
+                this.diagnostics.add(new Diagnostic(item.getAddress(), sourceLine, trimMessage(message)));
+            }
+        }
+        if (listed) {
+            this.diagnostics.add(new Diagnostic(item.getAddress(), sourceLine, trimMessage(item.getError())));
+        }
+    }
+    
+    /**
+     * Takes the dashes and the "ERROR:" off a listing message
+     * @param message like "---ERROR: Unknown Register ---"
+     * @return like "Unknown Register"
+     */
+    private static String trimMessage(String message) {
+        int start = 0;
+        int end = message.length();
+        while (start < end && (message.charAt(start) == '-' || Character.isWhitespace(message.charAt(start)))) {
+            start++;
+        }
+        while (end > start && (message.charAt(end - 1) == '-' || Character.isWhitespace(message.charAt(end - 1)))) {
+            end--;
+        }
+        message = message.substring(start, end);
+        if (message.regionMatches(true, 0, "ERROR:", 0, 6)) {
+            message = message.substring(6).trim();
         }
+        return message;
     }
     
 }
@@ -0,0 +1,100 @@
+package assembler;
+
+import java.io.IOException;
+
+/**
+ * Collects object code into T records of up to 30 bytes
+ *
+ * Code is added in address order; a record is written out when the next
+ * piece of code doesn't follow on from it (RESW/RESB leave a gap) or
+ * wouldn't fit, and by flush() at the end of the program. Code that has
+ * already been written out can be changed later with patch().
+ * @author Michael Frederick (n00725913)
+ */
+public class TextRecordBuilder {
+
+    public static final int MAX_BYTES = 0x1E;
+
+    private OutputChannel channel;
+    private StringBuilder code = new StringBuilder(MAX_BYTES * 2);
+    private StringBuilder record = new StringBuilder(MAX_BYTES * 2 + 16);
+    private int startAddress;
+    private int byteCount;
+
+    /**
+     * @param channel where the finished records are written
+     */
+    public TextRecordBuilder(OutputChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Adds the hex object code of one line
+     * @param address address of the first byte
+     * @param hex object code, an odd number of digits is zero padded on the left
+     * @throws IOException
+     */
+    public void add(int address, CharSequence hex) throws IOException {
+        int bytes = (hex.length() + 1) / 2;
+        if (bytes == 0) {
+            return;
+        }
+        if (this.byteCount > 0 && (address != this.startAddress + this.byteCount || this.byteCount + bytes > MAX_BYTES)) {
+            this.flush();
+        }
+        if (this.byteCount == 0) {
+            this.startAddress = address;
+        }
+        if (hex.length() % 2 != 0) {
+            this.code.append('0');
+        }
+        this.code.append(hex);
+        this.byteCount += bytes;
+    }
+
+    /**
+     * Replaces code added earlier. If it is still in the record being
+     * built it is changed there, otherwise a record of its own is written
+     * for the loader to lay over the old one.
+     * @param address address of the first byte
+     * @param hex the new object code, an even number of digits
+     * @throws IOException
+     */
+    public void patch(int address, CharSequence hex) throws IOException {
+        int offset = 2 * (address - this.startAddress);
+        if (this.byteCount > 0 && offset >= 0 && offset + hex.length() <= this.code.length()) {
+            for (int i = 0; i < hex.length(); i++) {
+                this.code.setCharAt(offset + i, hex.charAt(i));
+            }
+            return;
+        }
+        this.record.setLength(0);
+        this.record.append("T ");
+        HexEncoder.append(this.record, address, 6);
+        this.record.append(' ');
+        HexEncoder.append(this.record, hex.length() / 2, 2);
+        this.record.append(' ');
+        this.record.append(hex);
+        this.channel.println(this.record);
+    }
+
+    /**
+     * Writes out the record being built, if it has anything in it
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (this.byteCount == 0) {
+            return;
+        }
+        this.record.setLength(0);
+        this.record.append("T ");
+        HexEncoder.append(this.record, this.startAddress, 6);
+        this.record.append(' ');
+        HexEncoder.append(this.record, this.byteCount, 2);
+        this.record.append(' ');
+        this.record.append(this.code);
+        this.channel.println(this.record);
+        this.code.setLength(0);
+        this.byteCount = 0;
+    }
+}// end Class TextRecordBuilder
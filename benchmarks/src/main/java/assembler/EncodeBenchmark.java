@@ -0,0 +1,80 @@
+package assembler;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pass two encoding of a single line, for each kind of line
+ * @author Michael Frederick (n00725913)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"format2", "format3-pc", "format3-base", "format4", "word"})
+    public String kind;
+
+    SicAssembler assembler;
+    HashTable symbols;
+    DataItem item;
+    String source;
+    EncodedChunk chunk;
+    int baseAddress;
+
+    @Setup
+    public void setup() {
+        LineLexer lexer = LineLexer.forSource();
+        this.assembler = new SicAssembler(new File("bench.asm"), OPCodeDictionary.INSTANCE, AssemblerOptions.parse(new String[0]));
+        this.symbols = new HashTable();
+        this.symbols.insertData(label("NEAR", 0x1100));
+        this.symbols.insertData(label("FAR", 0x8000));
+        // Pass two wants even a register operand in the symbol table
+        this.symbols.insertData(label("A,S", 0x1000));
+        if ("format2".equals(this.kind)) {
+            this.source = "          COMPR    A,S";
+        }
+        else if ("format3-pc".equals(this.kind)) {
+            this.source = "          LDA      NEAR";
+        }
+        else if ("format3-base".equals(this.kind)) {
+            this.source = "          LDA      FAR";
+        }
+        else if ("format4".equals(this.kind)) {
+            this.source = "         +LDA      FAR";
+        }
+        else {
+            this.source = "          WORD     3";
+        }
+        this.item = this.assembler.buildCommand(this.source, OPCodeDictionary.INSTANCE, lexer);
+        this.item.setAddress(0x1000);
+        this.baseAddress = 0x7F00;
+        this.chunk = new EncodedChunk(0, 1, this.baseAddress);
+    }
+
+    private static DataItem label(String name, int address) {
+        DataItem item = new DataItem(name);
+        item.setAddress(address);
+        return item;
+    }
+
+    @Benchmark
+    public int encode() throws Exception {
+        this.assembler.encodeLine(this.item, this.source, this.baseAddress, this.chunk, 0, this.symbols, OPCodeDictionary.INSTANCE);
+        return this.chunk.getCode(0);
+    }
+}// end Class EncodeBenchmark
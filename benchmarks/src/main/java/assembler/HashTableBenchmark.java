@@ -0,0 +1,92 @@
+package assembler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Symbol table inserts and searches at different sizes and hit ratios
+ *
+ * Labels look like the ones in a real program (L0, L1 ...) and searches
+ * use separate copies of the strings, the way operands are.
+ * @author Michael Frederick (n00725913)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HashTableBenchmark {
+
+    // Searches timed per invocation
+    private static final int BATCH = 1024;
+
+    @State(Scope.Thread)
+    public static class Labels {
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+
+        DataItem[] items;
+
+        @Setup
+        public void setup() {
+            this.items = new DataItem[this.size];
+            for (int i = 0; i < this.size; i++) {
+                this.items[i] = new DataItem("L" + i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Searches {
+        @Param({"1.0", "0.5", "0.0"})
+        public double hitRatio;
+
+        HashTable table;
+        String[] keys;
+
+        @Setup
+        public void setup(Labels labels) {
+            Random random = new Random(42);
+            this.table = new HashTable();
+            for (DataItem item : labels.items) {
+                this.table.insertData(item);
+            }
+            this.keys = new String[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                int label = random.nextInt(labels.size);
+                this.keys[i] = (random.nextDouble() < this.hitRatio) ? new String("L" + label) : "M" + label;
+                this.keys[i].hashCode();
+            }
+        }
+    }
+
+    @Benchmark
+    public HashTable insert(Labels labels) {
+        HashTable table = new HashTable();
+        for (DataItem item : labels.items) {
+            table.insertData(item);
+        }
+        return table;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void search(Searches searches, Blackhole blackhole) {
+        for (String key : searches.keys) {
+            blackhole.consume(searches.table.searchForData(key));
+        }
+    }
+}// end Class HashTableBenchmark
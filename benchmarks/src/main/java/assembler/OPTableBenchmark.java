@@ -0,0 +1,68 @@
+package assembler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Opcode lookups in the built in table and in one built from the
+ * opcode list (the -Dopcodes.list file, ../SICOPS.txt by default)
+ * @author Michael Frederick (n00725913)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class OPTableBenchmark {
+
+    // The mix pass one and two look up: mnemonics, directives, registers
+    // and the odd label
+    private static final String[] KEYS = {
+        "LDA", "STA", "+JSUB", "COMP", "JEQ", "LDX", "COMPR", "CLEAR",
+        "RESW", "WORD", "BYTE", "BASE", "END", "X", "A", "L1234"
+    };
+
+    @Param({"dictionary", "hashtable"})
+    public String table;
+
+    OPTable opcodes;
+    String[] keys;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("dictionary".equals(this.table)) {
+            this.opcodes = OPCodeDictionary.INSTANCE;
+        }
+        else {
+            String list = System.getProperty("opcodes.list", "../SICOPS.txt");
+            this.opcodes = SicAssembler.loadOPTable(AssemblerOptions.parse(new String[] {"--opcodes=" + list}));
+        }
+        this.keys = new String[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            // Copies, the way the parsed mnemonics are
+            this.keys[i] = new String(KEYS[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void search(Blackhole blackhole) {
+        for (String key : this.keys) {
+            blackhole.consume(this.opcodes.searchForData(key));
+        }
+    }
+}// end Class OPTableBenchmark
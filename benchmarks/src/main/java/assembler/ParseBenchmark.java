@@ -0,0 +1,70 @@
+package assembler;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Splitting source lines into fields, on its own and as pass one does it
+ * @author Michael Frederick (n00725913)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    private static final String[] LINES = {
+        "FIRST     STL      RETADR             save return address",
+        "CLOOP    +JSUB     RDREC",
+        "          LDA      LENGTH",
+        "          COMP     #0",
+        "          JEQ      ENDFIL",
+        "          STCH     BUFFER,X",
+        "          COMPR    A,S",
+        "          CLEAR    X",
+        "RETADR    RESW     1",
+        "LENGTH    WORD     3",
+        "          BASE     LENGTH",
+        "          J        @RETADR"
+    };
+
+    SicAssembler assembler;
+    LineLexer lexer;
+
+    @Setup
+    public void setup() {
+        this.assembler = new SicAssembler(new File("bench.asm"), OPCodeDictionary.INSTANCE, AssemblerOptions.parse(new String[0]));
+        this.lexer = LineLexer.forSource();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void lex(Blackhole blackhole) {
+        for (String line : LINES) {
+            this.lexer.scan(line);
+            blackhole.consume(this.lexer.end(LineLexer.OPERAND));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void buildCommand(Blackhole blackhole) {
+        for (String line : LINES) {
+            blackhole.consume(this.assembler.buildCommand(line, OPCodeDictionary.INSTANCE, this.lexer));
+        }
+    }
+}// end Class ParseBenchmark
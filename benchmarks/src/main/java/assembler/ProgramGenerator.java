@@ -0,0 +1,280 @@
+package assembler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Writes synthetic SIC/XE programs of any size for the throughput harness
+ *
+ * The programs are laid out in the same columns as Testfile.txt and only
+ * use what this assembler accepts, so they assemble with no errors (the
+ * throughput harness checks): every statement has a label (L0, L1 ...,
+ * B0 ... for BASE), operands are always symbols, WORD and BYTE take plain
+ * numbers, and nothing is indexed. Most references are within PC range of
+ * the line, either backward or forward; a BASE directive every few
+ * thousand lines names a label already written, and the far references go
+ * to labels just after it so they come out base relative.
+ * Pass two looks every operand up in the symbol table, format 2 included,
+ * so the register pairs format 2 lines name ("A,S") are defined as labels
+ * too. The same seed and settings always give the same program.
+ *
+ *     ProgramGenerator LINES [FILE] [--seed=N] [--format2=F] [--format4=F]
+ *         [--data=F] [--reserve=F] [--comments=F] [--far=F] [--forward=F]
+ *         [--base-every=N]
+ *
+ * The F values are the fraction of lines of each kind, the rest are
+ * format 3 instructions.
+ * @author Michael Frederick (n00725913)
+ */
+public class ProgramGenerator {
+
+    private static final String[] FORMAT3 = {"LDA", "STA", "LDX", "STX", "LDB", "ADD", "SUB", "COMP", "JEQ", "JLT", "JGT", "J", "JSUB"};
+    private static final String[] FORMAT2 = {"COMPR", "ADDR", "RMO"};
+    private static final String[] REGISTER_PAIRS = {"A,S", "S,T", "X,A", "T,X"};
+    // How far a near reference may reach, in lines, kept inside PC range
+    private static final int NEAR_LINES = 300;
+
+    private long seed = 1;
+    private double format2 = 0.05;
+    private double format4 = 0.10;
+    private double data = 0.10;
+    private double reserve = 0.03;
+    private double comments = 0.03;
+    private double far = 0.05;
+    private double forward = 0.5;
+    private int baseEvery = 5000;
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        int lines = -1;
+        String fileName = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                if (!generator.setOption(arg)) {
+                    System.out.println("Unknown option: " + arg);
+                }
+            }
+            else if (lines < 0) {
+                lines = Integer.parseInt(arg);
+            }
+            else {
+                fileName = arg;
+            }
+        }
+        if (lines < 0) {
+            System.out.println("Usage: ProgramGenerator LINES [FILE] [--seed=N] [--format2=F] ...");
+            System.exit(1);
+        }
+        try {
+            if (fileName == null) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+                generator.write(out, lines);
+                out.flush();
+            }
+            else {
+                generator.write(new File(fileName), lines);
+            }
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sets one of the --name=value options from the usage above
+     * @param arg
+     * @return false if it isn't one of them
+     */
+    public boolean setOption(String arg) {
+        int equals = arg.indexOf('=');
+        if (equals < 0) {
+            return false;
+        }
+        String name = arg.substring(2, equals);
+        String value = arg.substring(equals + 1);
+        if ("seed".equals(name)) {
+            this.seed = Long.parseLong(value);
+        }
+        else if ("base-every".equals(name)) {
+            this.baseEvery = Integer.parseInt(value);
+        }
+        else if ("format2".equals(name)) {
+            this.format2 = Double.parseDouble(value);
+        }
+        else if ("format4".equals(name)) {
+            this.format4 = Double.parseDouble(value);
+        }
+        else if ("data".equals(name)) {
+            this.data = Double.parseDouble(value);
+        }
+        else if ("reserve".equals(name)) {
+            this.reserve = Double.parseDouble(value);
+        }
+        else if ("comments".equals(name)) {
+            this.comments = Double.parseDouble(value);
+        }
+        else if ("far".equals(name)) {
+            this.far = Double.parseDouble(value);
+        }
+        else if ("forward".equals(name)) {
+            this.forward = Double.parseDouble(value);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the value of seed
+     * @return the value of seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the value of seed
+     * @param seed new value of seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes a program to a file
+     * @param file
+     * @param lines about how many source lines to write
+     * @throws IOException
+     */
+    public void write(File file, int lines) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            this.write(out, lines);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a program
+     * @param out
+     * @param lines about how many source lines to write
+     * @throws IOException
+     */
+    public void write(Writer out, int lines) throws IOException {
+        Random random = new Random(this.seed);
+        StringBuilder line = new StringBuilder(64);
+        int statements = Math.max(1, lines - REGISTER_PAIRS.length - 4);
+        int baseLabel = -1;
+        int baseLag = Math.max(1, this.baseEvery / 2);
+        double kind;
+
+        writeLine(out, line, "PROG", "START", "1000");
+        for (String pair : REGISTER_PAIRS) {
+            writeLine(out, line, pair, "WORD", "0");
+        }
+        // Every operand is worked out PC or base relative, format 2 and 4
+        // included, so there is always a base for the ones out of PC range
+        writeLine(out, line, "B", "BASE", REGISTER_PAIRS[0]);
+        for (int i = 0; i < statements; i++) {
+            if (i >= baseLag && (i - baseLag) % this.baseEvery == 0) {
+                // A label that is already defined, half way back
+                baseLabel = i - baseLag;
+                writeLine(out, line, "B" + i, "BASE", "L" + baseLabel);
+            }
+            kind = random.nextDouble();
+            if ((kind -= this.comments) < 0) {
+                line.setLength(0);
+                line.append(". generated comment ").append(i).append('\n');
+                out.append(line);
+                kind = 1.0;
+            }
+            if ((kind -= this.data) < 0) {
+                if (random.nextBoolean()) {
+                    writeLine(out, line, "L" + i, "WORD", Integer.toString(random.nextInt(1000)));
+                }
+                else {
+                    writeLine(out, line, "L" + i, "BYTE", Integer.toString(1 + random.nextInt(255)));
+                }
+            }
+            else if ((kind -= this.reserve) < 0) {
+                if (random.nextBoolean()) {
+                    writeLine(out, line, "L" + i, "RESW", Integer.toString(1 + random.nextInt(3)));
+                }
+                else {
+                    writeLine(out, line, "L" + i, "RESB", Integer.toString(1 + random.nextInt(16)));
+                }
+            }
+            else if ((kind -= this.format2) < 0) {
+                writeLine(out, line, "L" + i, FORMAT2[random.nextInt(FORMAT2.length)], REGISTER_PAIRS[random.nextInt(REGISTER_PAIRS.length)]);
+            }
+            else {
+                String mneumonic = FORMAT3[random.nextInt(FORMAT3.length)];
+                String flag = "";
+                int target;
+                if ((kind -= this.format4) < 0) {
+                    mneumonic = "+" + mneumonic;
+                    target = random.nextInt(statements);
+                }
+                else if (random.nextDouble() < this.far && baseLabel >= 0) {
+                    // Out of PC range but close enough after the base
+                    target = baseLabel + random.nextInt(NEAR_LINES);
+                }
+                else if (random.nextDouble() < this.forward) {
+                    target = i + 1 + random.nextInt(NEAR_LINES);
+                }
+                else {
+                    target = i - random.nextInt(NEAR_LINES);
+                }
+                target = Math.max(0, Math.min(statements - 1, target));
+                kind = random.nextDouble();
+                if (kind < 0.10) {
+                    flag = "#";
+                }
+                else if (kind < 0.15) {
+                    flag = "@";
+                }
+                writeLine(out, line, "L" + i, mneumonic, flag + "L" + target);
+            }
+        }
+        writeLine(out, line, "", "END", "PROG");
+    }
+
+    /**
+     * Writes one statement in the source columns: label in column 1, a
+     * '+' in column 10, mnemonic in 11, an addressing flag in 19 and the
+     * operand in 20
+     */
+    private static void writeLine(Writer out, StringBuilder line, String label, String mneumonic, String operand) throws IOException {
+        line.setLength(0);
+        line.append(label);
+        pad(line, mneumonic.startsWith("+") ? 9 : 10);
+        line.append(mneumonic);
+        if (operand.startsWith("#") || operand.startsWith("@")) {
+            pad(line, 18);
+        }
+        else {
+            pad(line, 19);
+        }
+        line.append(operand).append('\n');
+        out.append(line);
+    }
+
+    private static void pad(StringBuilder line, int column) {
+        do {
+            line.append(' ');
+        } while (line.length() < column);
+    }
+}// end Class ProgramGenerator
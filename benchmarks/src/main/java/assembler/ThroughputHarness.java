@@ -0,0 +1,160 @@
+package assembler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the whole assembler over generated programs of growing size and
+ * reports lines per second, peak heap and GC time for each
+ *
+ *     ThroughputHarness [--sizes=1000,10000,...] [--runs=N] [--dir=DIR]
+ *         [generator options] [assembler options]
+ *
+ * The programs are made by ProgramGenerator (and kept in DIR, so a size
+ * is only generated once); the generator options are the ones it takes,
+ * everything else is passed on to the assembler, e.g. --sequential or
+ * --one-pass. Each size is assembled once to warm up and then timed runs
+ * times, the best run is reported. A program that assembles with errors
+ * stops the harness, since it would time the error paths instead. Like the assembler itself it writes
+ * the .lst and .obj files to the working directory. Give the JVM a big
+ * enough -Xmx for the largest size.
+ * @author Michael Frederick (n00725913)
+ */
+public class ThroughputHarness {
+
+    private static final int[] DEFAULT_SIZES = {1000, 10000, 100000, 1000000, 10000000};
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        List<String> assemblerArgs = new ArrayList<String>();
+        int[] sizes = DEFAULT_SIZES;
+        int runs = 3;
+        File directory = new File("target/programs");
+        OPTable opcodes;
+        AssemblerOptions options;
+
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                String[] values = arg.substring("--sizes=".length()).split(",");
+                sizes = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    sizes[i] = Integer.parseInt(values[i].trim());
+                }
+            }
+            else if (arg.startsWith("--runs=")) {
+                runs = Math.max(1, Integer.parseInt(arg.substring("--runs=".length())));
+            }
+            else if (arg.startsWith("--dir=")) {
+                directory = new File(arg.substring("--dir=".length()));
+            }
+            else if (!generator.setOption(arg)) {
+                assemblerArgs.add(arg);
+            }
+        }
+        options = AssemblerOptions.parse(assemblerArgs.toArray(new String[assemblerArgs.size()]));
+        try {
+            opcodes = SicAssembler.loadOPTable(options);
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        directory.mkdirs();
+
+        System.out.println(String.format("%10s %12s %14s %12s %10s %8s", "lines", "best ms", "lines/sec", "peak heap MB", "GC ms", "GCs"));
+        for (int size : sizes) {
+            File source = new File(directory, "program-" + size + "-" + generator.getSeed() + ".asm");
+            try {
+                if (!source.exists()) {
+                    generator.write(source, size);
+                }
+            }
+            catch (IOException e) {
+                System.out.println("Could not write " + source + ": " + e.getMessage());
+                System.exit(1);
+            }
+            Run best = null;
+            for (int i = 0; i <= runs; i++) {
+                Run run = measure(source, opcodes, options);
+                if (run == null) {
+                    System.out.println(source + ": FAILED");
+                    System.exit(1);
+                }
+                if (run.errors > 0) {
+                    System.out.println(source + ": " + run.errors + " lines with errors");
+                    System.exit(1);
+                }
+                // The first run is warm up
+                if (i > 0 && (best == null || run.nanos < best.nanos)) {
+                    best = run;
+                }
+            }
+            System.out.println(String.format("%10d %12.1f %14.0f %12.1f %10d %8d",
+                    size, best.nanos / 1e6, size / (best.nanos / 1e9), best.peakHeap / (1024.0 * 1024.0), best.gcMillis, best.gcCount));
+        }
+    }
+
+    /**
+     * Assembles the source once
+     * @return what it cost, or null if it failed
+     */
+    private static Run measure(File source, OPTable opcodes, AssemblerOptions options) {
+        Run run = new Run();
+        long gcMillis = 0;
+        long gcCount = 0;
+        long start;
+        boolean success;
+        SicAssembler assembler = new SicAssembler(source, opcodes, options);
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis -= collector.getCollectionTime();
+            gcCount -= collector.getCollectionCount();
+        }
+
+        start = System.nanoTime();
+        success = assembler.assemble();
+        run.nanos = System.nanoTime() - start;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += collector.getCollectionTime();
+            gcCount += collector.getCollectionCount();
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                // Summed per pool, so an upper bound on the real peak
+                run.peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        run.gcMillis = gcMillis;
+        run.gcCount = gcCount;
+        run.errors = assembler.getStats().getErrors();
+        return success ? run : null;
+    }
+
+    /**
+     * The cost of one assembly
+     */
+    private static class Run {
+        long nanos;
+        long peakHeap;
+        long gcMillis;
+        long gcCount;
+        long errors;
+    }
+}// end Class ThroughputHarness